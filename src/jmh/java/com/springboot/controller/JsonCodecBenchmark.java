@@ -0,0 +1,76 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * (De)serialization cost of the apply_offer request and response bodies with
+ * shared, pre-built readers and writers, as the controller path uses them, in
+ * each {@link WireFormat} the API negotiates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    public WireFormat format;
+
+    private ObjectReader requestReader;
+    private ObjectWriter requestWriter;
+    private ObjectReader responseReader;
+    private ObjectWriter responseWriter;
+    private byte[] requestBody;
+    private byte[] responseBody;
+    private ApplyOfferRequest request;
+    private ApplyOfferResponse response;
+
+    @Setup
+    public void setUp() throws IOException {
+        requestReader = format.mapper().readerFor(ApplyOfferRequest.class);
+        requestWriter = format.mapper().writerFor(ApplyOfferRequest.class);
+        responseReader = format.mapper().readerFor(ApplyOfferResponse.class);
+        responseWriter = format.mapper().writerFor(ApplyOfferResponse.class);
+        request = new ApplyOfferRequest(1995, 1234, 987654);
+        response = new ApplyOfferResponse(1796);
+        requestBody = requestWriter.writeValueAsBytes(request);
+        responseBody = responseWriter.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public ApplyOfferRequest readRequest() throws IOException {
+        return requestReader.readValue(requestBody);
+    }
+
+    @Benchmark
+    public byte[] writeRequest() throws IOException {
+        return requestWriter.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public ApplyOfferResponse readResponse() throws IOException {
+        return responseReader.readValue(responseBody);
+    }
+
+    @Benchmark
+    public byte[] writeResponse() throws IOException {
+        return responseWriter.writeValueAsBytes(response);
+    }
+}
@@ -0,0 +1,120 @@
+package com.springboot.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offer lookup and discount computation in isolation from HTTP and the segment
+ * service. Each restaurant holds OFFERS_PER_RESTAURANT offers; a hit is a cart
+ * whose restaurant has an offer for the user's segment, a miss is either an
+ * unknown restaurant or a segment none of its offers target.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OfferMatchingBenchmark {
+
+    private static final int OFFERS_PER_RESTAURANT = 2;
+    private static final int SEGMENT_POOL = 16;
+    private static final int QUERIES = 4096;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int offers;
+
+    @Param({"1", "3"})
+    public int segmentsPerOffer;
+
+    @Param({"0.0", "0.5", "1.0"})
+    public double hitRatio;
+
+    private OfferStore store;
+    private int[] restaurantIds;
+    private String[] segments;
+    private int[] cartValues;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        store = new OfferStore();
+        int restaurants = Math.max(1, offers / OFFERS_PER_RESTAURANT);
+        List<OfferRequest> chunk = new ArrayList<>();
+        for (int i = 0; i < offers; i++) {
+            List<String> offerSegments = new ArrayList<>();
+            // segments s0..s(SEGMENT_POOL/2 - 1) are the only ones offers ever target
+            for (int s = 0; s < segmentsPerOffer; s++) {
+                offerSegments.add("s" + ((i + s) % (SEGMENT_POOL / 2)));
+            }
+            String type = i % 2 == 0 ? "FLATX" : "FLAT_PERCENT";
+            chunk.add(new OfferRequest(i % restaurants, type, 1 + random.nextInt(50), offerSegments));
+            if (chunk.size() == 10_000) {
+                store.addAll(chunk);
+                chunk.clear();
+            }
+        }
+        store.addAll(chunk);
+
+        restaurantIds = new int[QUERIES];
+        segments = new String[QUERIES];
+        cartValues = new int[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            int restaurant = random.nextInt(restaurants);
+            cartValues[q] = 1 + random.nextInt(5000);
+            if (random.nextDouble() < hitRatio) {
+                CompiledOffer offer = store.snapshot().offers(restaurant).get(0);
+                restaurantIds[q] = restaurant;
+                segments[q] = offer.getOffer().getCustomer_segment().get(0);
+            } else if (random.nextBoolean()) {
+                restaurantIds[q] = restaurants + restaurant;
+                segments[q] = "s0";
+            } else {
+                restaurantIds[q] = restaurant;
+                segments[q] = "s" + (SEGMENT_POOL / 2 + random.nextInt(SEGMENT_POOL / 2));
+            }
+        }
+    }
+
+    @Benchmark
+    public CompiledOffer lookup() {
+        int q = next++ & (QUERIES - 1);
+        return store.find(restaurantIds[q], segments[q]);
+    }
+
+    @Benchmark
+    public int lookupAndPrice() {
+        int q = next++ & (QUERIES - 1);
+        CompiledOffer offer = store.find(restaurantIds[q], segments[q]);
+        return offer == null ? cartValues[q] : offer.apply(cartValues[q]);
+    }
+
+    @Benchmark
+    public int selectBestAndPrice() {
+        int q = next++ & (QUERIES - 1);
+        CompiledOffer offer = store.select(restaurantIds[q], segments[q], cartValues[q], SelectionPolicy.BEST_DISCOUNT);
+        return offer == null ? cartValues[q] : offer.apply(cartValues[q]);
+    }
+
+    @Benchmark
+    public boolean candidateCheck() {
+        int q = next++ & (QUERIES - 1);
+        return store.hasCandidates(restaurantIds[q]);
+    }
+}
@@ -0,0 +1,92 @@
+package com.springboot.controller;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AIMD limit on the number of calls outstanding to a dependency.
+ *
+ * A call that succeeds within the latency threshold while the limit is at
+ * least half used grows the limit by about one per round trip; a call that
+ * fails, or succeeds but slower than the threshold, shrinks it by the backoff
+ * ratio. Calls beyond the current limit are rejected instead of queueing, so a
+ * struggling dependency sees less traffic rather than more.
+ */
+public class AdaptiveLimiter {
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double backoffRatio;
+	private final long latencyThresholdNanos;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final LongAdder rejected = new LongAdder();
+	// written under the lock, read without it by tryAcquire
+	private volatile double limit;
+
+	public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long latencyThreshold,
+			TimeUnit unit) {
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.backoffRatio = backoffRatio;
+		this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+		this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+	}
+
+	// A limiter that admits every call.
+	public static AdaptiveLimiter unlimited() {
+		return new AdaptiveLimiter(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 1.0, Long.MAX_VALUE,
+				TimeUnit.NANOSECONDS);
+	}
+
+	public boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= (int) limit) {
+				rejected.increment();
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	public void onSuccess(long rttNanos) {
+		int outstanding = inFlight.getAndDecrement();
+		if (rttNanos > latencyThresholdNanos) {
+			backoff();
+		} else if (outstanding * 2 >= limit) {
+			// only grow while the limit is actually being used
+			synchronized (this) {
+				limit = Math.min(maxLimit, limit + 1.0 / limit);
+			}
+		}
+	}
+
+	public void onDropped() {
+		inFlight.decrementAndGet();
+		backoff();
+	}
+
+	// Releases a permit whose call was never made, without adjusting the limit.
+	public void onIgnore() {
+		inFlight.decrementAndGet();
+	}
+
+	private synchronized void backoff() {
+		limit = Math.max(minLimit, limit * backoffRatio);
+	}
+
+	public int limit() {
+		return (int) Math.min(limit, Integer.MAX_VALUE);
+	}
+
+	public int inFlight() {
+		return inFlight.get();
+	}
+
+	public long rejected() {
+		return rejected.sum();
+	}
+}
@@ -0,0 +1,243 @@
+package com.springboot.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a request is worked on now, after a short wait, or shed.
+ *
+ * Checkout and offer ingestion share a fixed number of slots. A request that
+ * finds none free waits in a bounded queue for its class, and is shed when the
+ * queue is full or its queue-time deadline passes, so overload turns into fast
+ * refusals instead of requests piling up until they time out. Ingestion is
+ * capped at a few of the shared slots and is shed outright while carts are
+ * waiting, so checkout always wins.
+ *
+ * Carts are also rate limited per restaurant with a token bucket, so one hot
+ * restaurant cannot take every slot from the others.
+ */
+@Component
+public class AdmissionController {
+
+	public enum Priority {
+		CHECKOUT, INGESTION
+	}
+
+	public enum ShedMode {
+		// answer 503 so the client backs off
+		REJECT,
+		// price the cart without a discount and without looking up the segment
+		NO_OFFER
+	}
+
+	private final boolean enabled;
+	private final AdmissionProperties properties;
+	private final Semaphore shared;
+	private final Semaphore ingestion;
+	private final AtomicInteger checkoutQueued = new AtomicInteger();
+	private final AtomicInteger ingestionQueued = new AtomicInteger();
+	private final Cache<Integer, TokenBucket> restaurantBuckets;
+	private final Counter checkoutQueueFull;
+	private final Counter checkoutQueueTimeout;
+	private final Counter checkoutRestaurantRate;
+	private final Counter ingestionQueueFull;
+	private final Counter ingestionQueueTimeout;
+	private final Counter ingestionPriority;
+
+	@Autowired
+	public AdmissionController(AdmissionProperties properties, MeterRegistry registry) {
+		this.enabled = properties.isEnabled();
+		this.properties = properties;
+		this.shared = new Semaphore(properties.getMaxConcurrent());
+		this.ingestion = new Semaphore(properties.getIngestion().getMaxConcurrent());
+		this.restaurantBuckets = Caffeine.newBuilder()
+				.maximumSize(properties.getRestaurant().getMaxTracked())
+				.expireAfterAccess(1, TimeUnit.MINUTES)
+				.build();
+
+		this.checkoutQueueFull = shed(registry, Priority.CHECKOUT, "queue_full");
+		this.checkoutQueueTimeout = shed(registry, Priority.CHECKOUT, "queue_timeout");
+		this.checkoutRestaurantRate = shed(registry, Priority.CHECKOUT, "restaurant_rate");
+		this.ingestionQueueFull = shed(registry, Priority.INGESTION, "queue_full");
+		this.ingestionQueueTimeout = shed(registry, Priority.INGESTION, "queue_timeout");
+		this.ingestionPriority = shed(registry, Priority.INGESTION, "priority");
+		queued(registry, Priority.CHECKOUT, checkoutQueued);
+		queued(registry, Priority.INGESTION, ingestionQueued);
+		Gauge.builder("admission.in_use", shared, s -> properties.getMaxConcurrent() - s.availablePermits())
+				.description("Shared admission slots held by requests in progress")
+				.register(registry);
+	}
+
+	private static Counter shed(MeterRegistry registry, Priority priority, String reason) {
+		return Counter.builder("admission.shed")
+				.description("Requests shed by admission control")
+				.tag("class", priority.name().toLowerCase())
+				.tag("reason", reason)
+				.register(registry);
+	}
+
+	private static void queued(MeterRegistry registry, Priority priority, AtomicInteger queued) {
+		Gauge.builder("admission.queued", queued, AtomicInteger::get)
+				.description("Requests waiting for an admission slot")
+				.tag("class", priority.name().toLowerCase())
+				.register(registry);
+	}
+
+	public int queued(Priority priority) {
+		return (priority == Priority.CHECKOUT ? checkoutQueued : ingestionQueued).get();
+	}
+
+	public ShedMode checkoutShedMode() {
+		return properties.getCheckout().getShedMode();
+	}
+
+	public long retryAfterSeconds() {
+		long millis = properties.getRetryAfter().toMillis();
+		return Math.max(1, (millis + 999) / 1000);
+	}
+
+	// How long a bulk upload may keep its ingestion slot; unbounded when admission is off.
+	public long ingestionMaxHoldNanos() {
+		return enabled ? properties.getIngestion().getMaxHold().toNanos() : Long.MAX_VALUE;
+	}
+
+	// Returns a ticket to close when the request is done, or null when the request is shed.
+	public Ticket admit(Priority priority) {
+		if (!enabled) {
+			return Ticket.UNLIMITED;
+		}
+		return priority == Priority.CHECKOUT ? admitCheckout() : admitIngestion();
+	}
+
+	// Takes a token from the restaurant's bucket; false when the restaurant is over its rate.
+	public boolean allowRestaurant(int restaurantId) {
+		if (!enabled || !properties.getRestaurant().isEnabled()) {
+			return true;
+		}
+		TokenBucket bucket = restaurantBuckets.get(restaurantId, id -> new TokenBucket(
+				properties.getRestaurant().getRatePerSecond(), properties.getRestaurant().getBurst()));
+		if (bucket.tryTake(System.nanoTime())) {
+			return true;
+		}
+		checkoutRestaurantRate.increment();
+		return false;
+	}
+
+	private Ticket admitCheckout() {
+		if (shared.tryAcquire()) {
+			return new Ticket(shared, null);
+		}
+		AdmissionProperties.Checkout checkout = properties.getCheckout();
+		if (!await(shared, checkoutQueued, checkout.getMaxQueue(), checkout.getQueueTimeout().toNanos(),
+				checkoutQueueFull, checkoutQueueTimeout)) {
+			return null;
+		}
+		return new Ticket(shared, null);
+	}
+
+	private Ticket admitIngestion() {
+		if (checkoutQueued.get() > 0) {
+			ingestionPriority.increment();
+			return null;
+		}
+		if (!ingestion.tryAcquire()) {
+			AdmissionProperties.Ingestion config = properties.getIngestion();
+			if (!await(ingestion, ingestionQueued, config.getMaxQueue(), config.getQueueTimeout().toNanos(),
+					ingestionQueueFull, ingestionQueueTimeout)) {
+				return null;
+			}
+		}
+		// ingestion never queues for a shared slot, so it cannot sit ahead of a cart
+		if (checkoutQueued.get() > 0 || !shared.tryAcquire()) {
+			ingestion.release();
+			ingestionPriority.increment();
+			return null;
+		}
+		return new Ticket(shared, ingestion);
+	}
+
+	private static boolean await(Semaphore semaphore, AtomicInteger queued, int maxQueue, long timeoutNanos,
+			Counter queueFull, Counter queueTimeout) {
+		if (queued.incrementAndGet() > maxQueue) {
+			queued.decrementAndGet();
+			queueFull.increment();
+			return false;
+		}
+		try {
+			if (semaphore.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+				return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			queued.decrementAndGet();
+		}
+		queueTimeout.increment();
+		return false;
+	}
+
+	/**
+	 * Slots held by an admitted request. Closing it more than once releases
+	 * them once, so it can be closed from whichever thread finishes the request.
+	 */
+	public static final class Ticket implements AutoCloseable {
+		static final Ticket UNLIMITED = new Ticket(null, null);
+
+		private final Semaphore shared;
+		private final Semaphore own;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Ticket(Semaphore shared, Semaphore own) {
+			this.shared = shared;
+			this.own = own;
+		}
+
+		@Override
+		public void close() {
+			if (shared != null && released.compareAndSet(false, true)) {
+				shared.release();
+				if (own != null) {
+					own.release();
+				}
+			}
+		}
+	}
+
+	// Generic cell rate form of a token bucket: one CAS per request and no refill thread.
+	static final class TokenBucket {
+		private final long intervalNanos;
+		private final long burstNanos;
+		// time by which every token taken so far will have been refilled
+		private final AtomicLong theoreticalArrival;
+
+		TokenBucket(double ratePerSecond, int burst) {
+			this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+			this.burstNanos = intervalNanos * Math.max(1, burst);
+			this.theoreticalArrival = new AtomicLong(System.nanoTime());
+		}
+
+		boolean tryTake(long now) {
+			while (true) {
+				long arrival = theoreticalArrival.get();
+				long next = Math.max(arrival - now, 0) + now + intervalNanos;
+				if (next - now > burstNanos) {
+					return false;
+				}
+				if (theoreticalArrival.compareAndSet(arrival, next)) {
+					return true;
+				}
+			}
+		}
+	}
+}
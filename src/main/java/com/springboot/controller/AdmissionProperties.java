@@ -0,0 +1,58 @@
+package com.springboot.controller;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "admission")
+public class AdmissionProperties {
+    private boolean enabled = true;
+
+    // checkout and ingestion requests in progress at once; the rest wait in their class's queue or are shed
+    private int maxConcurrent = 128;
+
+    // sent as Retry-After, rounded up to whole seconds, with every 503 for a shed request
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    private Checkout checkout = new Checkout();
+
+    private Ingestion ingestion = new Ingestion();
+
+    private Restaurant restaurant = new Restaurant();
+
+    @Data
+    public static class Checkout {
+        private int maxQueue = 64;
+        // a cart that waits longer than this for a slot is shed
+        private Duration queueTimeout = Duration.ofMillis(50);
+        // REJECT answers 503 with Retry-After; NO_OFFER prices a shed cart at full price with a 200,
+        // counted as cart.apply_offer.shed
+        private AdmissionController.ShedMode shedMode = AdmissionController.ShedMode.REJECT;
+    }
+
+    @Data
+    public static class Ingestion {
+        // offer writes never hold more than this many of the shared slots, and are shed while carts are queued
+        private int maxConcurrent = 8;
+        private int maxQueue = 32;
+        private Duration queueTimeout = Duration.ofSeconds(1);
+        // a bulk upload holds its slot for at most this long; lines after it are not read, see BulkOfferResponse.complete
+        private Duration maxHold = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Restaurant {
+        private boolean enabled = true;
+        // sustained apply_offer rate allowed per restaurant, and the burst above it. Every cart of a batch takes a
+        // token from its restaurant; a batch with a cart over the rate is answered 503 as a whole under REJECT,
+        // while NO_OFFER prices only the carts over the rate at full price
+        private double ratePerSecond = 1000;
+        private int burst = 2000;
+        // restaurants tracked at once; idle ones are dropped first
+        private long maxTracked = 100_000;
+    }
+}
@@ -1,92 +1,346 @@
 package com.springboot.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 @RestController
 public class AutowiredController {
 
+	private static final Logger log = LoggerFactory.getLogger(AutowiredController.class);
 
-	List<OfferRequest> allOffers = new ArrayList<>();
+	// below this many carts a batch is priced on the request thread
+	private static final int PARALLEL_BATCH_THRESHOLD = 256;
 
+	@Autowired
+	OfferStore offerStore;
+
+	@Autowired
+	OfferStores offerStores;
+
+	@Autowired
+	SegmentService segmentService;
+
+	@Autowired
+	OfferIngestor offerIngestor;
+
+	@Autowired
+	CartOfferMetrics metrics;
+
+	@Autowired
+	OfferProperties offerProperties;
+
+	@Autowired
+	AdmissionController admission;
+
+	@Autowired
+	OfferReplica replica;
+
+	@Autowired
+	ShardRouter router;
+
+	@Autowired
+	ClusterClient clusterClient;
+
+	// On a replica writes to the default namespace go to the leader; see OfferReplica. Other namespaces are local to each node.
 	@PostMapping(path = "/api/v1/offer")
-	public ApiResponse postOperation(@RequestBody OfferRequest offerRequest) {
-		System.out.println(offerRequest);
-		allOffers.add(offerRequest);
-		return new ApiResponse("Success");
+	public ApiResponse postOperation(@RequestBody OfferRequest offerRequest, @RequestHeader(value = OfferStores.HEADER, required = false) String namespace,
+			HttpServletResponse response) {
+		try (AdmissionController.Ticket ticket = admitIngestion()) {
+			if (log.isDebugEnabled()) {
+				log.debug("offer_received namespace={} offer={}", namespace, offerRequest);
+			}
+			OfferValidator.check(offerRequest);
+			if (replica.isEnabled() && OfferStores.isDefault(namespace)) {
+				return replica.forwardOffer(offerRequest);
+			}
+			OfferStore store = offerStores.write(namespace);
+			store.add(offerRequest);
+			writtenVersion(response, store);
+			return new ApiResponse("Success");
+		}
+	}
+
+	// Newline-delimited JSON, one OfferRequest per line, streamed into the store in chunks
+	@PostMapping(path = "/api/v1/offer/bulk", consumes = "application/x-ndjson")
+	public BulkOfferResponse postOffers(InputStream body, @RequestHeader(value = OfferStores.HEADER, required = false) String namespace,
+			HttpServletResponse response) throws IOException {
+		try (AdmissionController.Ticket ticket = admitIngestion()) {
+			if (replica.isEnabled() && OfferStores.isDefault(namespace)) {
+				return replica.forwardBulk(body);
+			}
+			OfferStore store = offerStores.write(namespace);
+			BulkOfferResponse result = offerIngestor.ingest(body, store, admission.ingestionMaxHoldNanos());
+			writtenVersion(response, store);
+			return result;
+		}
+	}
+
+	// Tells a replica that forwarded the write which change it has to apply before answering its own client
+	private void writtenVersion(HttpServletResponse response, OfferStore store) {
+		response.setHeader(ClusterClient.VERSION_HEADER, Long.toString(store.snapshot().version()));
 	}
 
+	// Carts of a namespace other than the default one are always priced by the node they are sent to
 	@PostMapping(path = "/api/v1/cart/apply_offer")
-    public ApplyOfferResponse applyOffer(@RequestBody ApplyOfferRequest applyOfferRequest) throws Exception {
+    public ApplyOfferResponse applyOffer(@RequestBody ApplyOfferRequest applyOfferRequest,
+            @RequestHeader(value = OfferStores.HEADER, required = false) String namespace,
+            @RequestHeader(value = ClusterClient.FORWARDED_HEADER, required = false) String forwarded,
+            @RequestHeader(value = ClusterClient.VERSION_HEADER, required = false) Long routedVersion) throws Exception {
+        OfferStore store = offerStores.read(namespace);
+        if (forwarded == null && OfferStores.isDefault(namespace)) {
+            String owner = router.owner(applyOfferRequest.getRestaurant_id());
+            ApplyOfferResponse routed = owner == null ? null : route(owner, applyOfferRequest);
+            if (routed != null) {
+                return routed;
+            }
+        } else if (routedVersion != null && replica.isEnabled()) {
+            // the routing node may have seen an offer this replica has not applied yet
+            replica.awaitSequence(routedVersion);
+        }
+        long start = System.nanoTime();
+        AdmissionController.Ticket ticket = admitCheckout(applyOfferRequest);
+        try {
+            if (ticket == null) {
+                return shed(applyOfferRequest);
+            }
+            if (!store.hasCandidates(applyOfferRequest.getRestaurant_id())) {
+                return noOffer(applyOfferRequest);
+            }
+
+            // Fetch segment from MockServer (p1, p2, or p3)
+            SegmentResponse segmentResponse = segmentService.getSegment(applyOfferRequest.getUser_id());
+
+            return new ApplyOfferResponse(price(store, applyOfferRequest, segmentResponse.getSegment()));
+        } finally {
+            if (ticket != null) {
+                ticket.close();
+            }
+            metrics.recordApply(start);
+        }
+    }
+
+	// Same pricing as apply_offer, but the servlet thread is released while the segment lookup is in flight
+	@PostMapping(path = "/api/v1/cart/apply_offer/async")
+	public CompletableFuture<ApplyOfferResponse> applyOfferAsync(@RequestBody ApplyOfferRequest applyOfferRequest,
+			@RequestHeader(value = OfferStores.HEADER, required = false) String namespace) {
+		long start = System.nanoTime();
+		OfferStore store = offerStores.read(namespace);
+		AdmissionController.Ticket ticket = admitCheckout(applyOfferRequest);
+		if (ticket == null || !store.hasCandidates(applyOfferRequest.getRestaurant_id())) {
+			try {
+				return CompletableFuture.completedFuture(ticket == null ? shed(applyOfferRequest) : noOffer(applyOfferRequest));
+			} finally {
+				if (ticket != null) {
+					ticket.close();
+				}
+				metrics.recordApply(start);
+			}
+		}
+		return segmentService.getSegmentAsync(applyOfferRequest.getUser_id())
+				.thenApply(segmentResponse -> new ApplyOfferResponse(price(store, applyOfferRequest, segmentResponse.getSegment())))
+				.whenComplete((response, error) -> {
+					ticket.close();
+					metrics.recordApply(start);
+				});
+	}
+
+	// Prices many carts in one call. Each user's segment is resolved once, concurrently,
+	// and every cart is priced exactly as the single-cart endpoint would price it.
+	@PostMapping(path = "/api/v1/cart/apply_offer/batch")
+	public List<ApplyOfferResponse> applyOffers(@RequestBody List<ApplyOfferRequest> applyOfferRequests,
+			@RequestHeader(value = OfferStores.HEADER, required = false) String namespace) {
+		// every cart is charged to its restaurant's rate, then the batch takes one slot
+		ApplyOfferResponse[] responses = new ApplyOfferResponse[applyOfferRequests.size()];
+		for (int i = 0; i < responses.length; i++) {
+			ApplyOfferRequest request = applyOfferRequests.get(i);
+			if (!admission.allowRestaurant(request.getRestaurant_id())) {
+				responses[i] = shed(request);
+			}
+		}
+		AdmissionController.Ticket ticket = admission.admit(AdmissionController.Priority.CHECKOUT);
+		if (ticket == null) {
+			for (int i = 0; i < responses.length; i++) {
+				responses[i] = shed(applyOfferRequests.get(i));
+			}
+			return Arrays.asList(responses);
+		}
+		try {
+			return priceBatch(offerStores.read(namespace), applyOfferRequests, responses);
+		} finally {
+			ticket.close();
+		}
+	}
+
+	// Prices the carts that have no response yet
+	private List<ApplyOfferResponse> priceBatch(OfferStore store, List<ApplyOfferRequest> applyOfferRequests,
+			ApplyOfferResponse[] responses) {
+		Set<Integer> userIds = new HashSet<>();
+		boolean[] hasCandidates = new boolean[responses.length];
+		for (int i = 0; i < responses.length; i++) {
+			ApplyOfferRequest request = applyOfferRequests.get(i);
+			if (responses[i] == null && store.hasCandidates(request.getRestaurant_id())) {
+				hasCandidates[i] = true;
+				userIds.add(request.getUser_id());
+			}
+		}
+		Map<Integer, SegmentResponse> segments = segmentService.getSegments(userIds);
+
+		IntStream carts = IntStream.range(0, responses.length).filter(i -> responses[i] == null);
+		if (responses.length >= PARALLEL_BATCH_THRESHOLD) {
+			carts = carts.parallel();
+		}
+		carts.forEach(i -> {
+			ApplyOfferRequest request = applyOfferRequests.get(i);
+			if (!hasCandidates[i]) {
+				responses[i] = noOffer(request);
+				return;
+			}
+			// as on the single-cart path, a cart whose segment is missing is priced without one
+			SegmentResponse segmentResponse = segments.get(request.getUser_id());
+			String userSegment = segmentResponse == null ? null : segmentResponse.getSegment();
+			responses[i] = new ApplyOfferResponse(price(store, request, userSegment));
+		});
+		return Arrays.asList(responses);
+	}
+
+	// Priced by the node owning the restaurant; null when it could not be reached, and the cart is priced here instead
+	private ApplyOfferResponse route(String owner, ApplyOfferRequest applyOfferRequest) {
+		long epoch = router.acquire(owner);
+		if (epoch == CircuitBreaker.REJECTED) {
+			// the owner keeps failing, so its carts are priced here until a probe gets through
+			return null;
+		}
+		try {
+			long version = replica.isEnabled() ? replica.appliedSequence() : offerStore.snapshot().version();
+			ApplyOfferResponse response = clusterClient.route(owner, applyOfferRequest, version);
+			router.record(owner, epoch, true);
+			metrics.routed();
+			return response;
+		} catch (IOException e) {
+			router.record(owner, epoch, false);
+			log.warn("cart_route_failed owner={} restaurant_id={} error={}", owner, applyOfferRequest.getRestaurant_id(), e.toString());
+			return null;
+		}
+	}
+
+	// Null when the cart is shed, either for the restaurant's rate or for want of a slot
+	private AdmissionController.Ticket admitCheckout(ApplyOfferRequest applyOfferRequest) {
+		if (!admission.allowRestaurant(applyOfferRequest.getRestaurant_id())) {
+			return null;
+		}
+		return admission.admit(AdmissionController.Priority.CHECKOUT);
+	}
+
+	private AdmissionController.Ticket admitIngestion() {
+		AdmissionController.Ticket ticket = admission.admit(AdmissionController.Priority.INGESTION);
+		if (ticket == null) {
+			throw new OverloadedException("Offer ingestion is shed while checkout is overloaded", admission.retryAfterSeconds());
+		}
+		return ticket;
+	}
+
+	// Shed requests are told when to come back rather than retrying at once
+	@ExceptionHandler(OverloadedException.class)
+	public ResponseEntity<ApiResponse> overloaded(OverloadedException e) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+				.body(new ApiResponse(e.getReason()));
+	}
+
+	// Overloaded: either refuse the cart or price it without a discount and without a segment lookup
+	private ApplyOfferResponse shed(ApplyOfferRequest applyOfferRequest) {
+		metrics.shed();
+		if (admission.checkoutShedMode() == AdmissionController.ShedMode.REJECT) {
+			throw new OverloadedException("Cart pricing is overloaded, retry later", admission.retryAfterSeconds());
+		}
+		if (logDecision()) {
+			log.info("offer_skipped reason=shed restaurant_id={} user_id={}",
+					applyOfferRequest.getRestaurant_id(), applyOfferRequest.getUser_id());
+		}
+		return new ApplyOfferResponse(applyOfferRequest.getCart_value());
+	}
+
+	// The restaurant has no offer any segment could match, so the segment is never fetched
+	private ApplyOfferResponse noOffer(ApplyOfferRequest applyOfferRequest) {
+		metrics.noCandidates();
+		if (logDecision()) {
+			log.info("offer_skipped reason=no_candidates restaurant_id={} user_id={}",
+					applyOfferRequest.getRestaurant_id(), applyOfferRequest.getUser_id());
+		}
+		return new ApplyOfferResponse(applyOfferRequest.getCart_value());
+	}
+
+	private int price(OfferStore store, ApplyOfferRequest applyOfferRequest, String userSegment) {
         int cartVal = applyOfferRequest.getCart_value();
-        
-        // Fetch segment from MockServer (p1, p2, or p3)
-        SegmentResponse segmentResponse = getSegmentResponse(applyOfferRequest.getUser_id());
-        String userSegment = segmentResponse.getSegment();
 
         // Find matching offer for Restaurant + Segment
-        Optional<OfferRequest> matchRequest = allOffers.stream()
-                .filter(x -> x.getRestaurant_id() == applyOfferRequest.getRestaurant_id())
-                .filter(x -> x.getCustomer_segment() != null && x.getCustomer_segment().contains(userSegment))
-                .findFirst();
-
-        if (matchRequest.isPresent()) {
-            OfferRequest gotOffer = matchRequest.get();
-            String offerType = gotOffer.getOffer_type();
-            int offerValue = gotOffer.getOffer_value();
-
-            System.out.println("Applied Offer: " + offerType + " for Segment: " + userSegment);
-            
-            if (offerValue > 0) {
-	            if (offerType.equals("FLATX")) {
-	                cartVal = cartVal - offerValue;
-	            } else if (offerType.contains("PERCENT")) { // Handles FLAT_PERCENT or PERCENTAGE
-	            	cartVal = (int) Math.round(cartVal - (cartVal * offerValue / 100.0));
-	            }
+        CompiledOffer gotOffer = store.select(applyOfferRequest.getRestaurant_id(), userSegment, cartVal,
+                offerProperties.getSelectionPolicy());
+
+        if (gotOffer != null) {
+            if (logDecision()) {
+                log.info("offer_applied restaurant_id={} user_id={} segment={} offer_type={}",
+                        applyOfferRequest.getRestaurant_id(), applyOfferRequest.getUser_id(), userSegment, gotOffer.getOffer().getOffer_type());
             }
-            
-            // Safety check for negative values
-            cartVal = Math.max(0, cartVal); 
+            cartVal = gotOffer.apply(cartVal);
+            metrics.matched(gotOffer.getType());
         } else {
-            System.out.println("No matching offer found for user " + applyOfferRequest.getUser_id() + " in segment " + userSegment);
+            metrics.unmatched(userSegment);
+            if (logDecision()) {
+                log.info("offer_not_matched restaurant_id={} user_id={} segment={}",
+                        applyOfferRequest.getRestaurant_id(), applyOfferRequest.getUser_id(), userSegment);
+            }
         }
         
-        return new ApplyOfferResponse(cartVal);
+        return cartVal;
     }
 
-	private SegmentResponse getSegmentResponse(int userid) {
-	    try {
-	        String urlString = "http://localhost:1080/api/v1/user_segment?user_id=" + userid;
-	        URL url = new URL(urlString);
-	        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-	        connection.setRequestMethod("GET");
-	        connection.setRequestProperty("accept", "application/json");
-
-	        // Use try-with-resources to ensure the stream closes automatically
-	        try (InputStream responseStream = connection.getInputStream()) {
-	            ObjectMapper mapper = new ObjectMapper();
-	            return mapper.readValue(responseStream, SegmentResponse.class);
-	        } finally {
-	            connection.disconnect();
-	        }
-	    } catch (Exception e) {
-	        System.out.println("Error fetching segment: " + e.getMessage());
-	        return new SegmentResponse(); // Return empty if failed
-	    }
+	// Level check first so nothing is formatted or sampled when decision logging is off
+	private boolean logDecision() {
+		if (!log.isInfoEnabled()) {
+			return false;
+		}
+		double sampleRate = offerProperties.getDecisionLog().getSampleRate();
+		return sampleRate >= 1.0 || (sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+	}
+
+	@GetMapping("/api/v1/segment/stats")
+	public SegmentStats segmentStats() {
+		return segmentService.stats();
 	}
 
+	// With a namespace only that namespace's offers are dropped, and the shared segment cache is left alone
 	@PostMapping("/api/v1/test/reset")
-	public void resetData() {
-	    this.allOffers.clear(); 
+	public void resetData(@RequestHeader(value = OfferStores.HEADER, required = false) String namespace, HttpServletResponse response) {
+	    if (!OfferStores.isDefault(namespace)) {
+	        this.offerStores.drop(namespace);
+	        return;
+	    }
+	    if (replica.isEnabled()) {
+	        replica.forwardReset();
+	        return;
+	    }
+	    this.offerStore.clear();
+	    this.segmentService.invalidateAll();
+	    writtenVersion(response, offerStore);
 	}
 
 }
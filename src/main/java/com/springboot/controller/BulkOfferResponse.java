@@ -0,0 +1,24 @@
+package com.springboot.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkOfferResponse {
+    private long lines;
+    private long accepted;
+    private long rejected;
+    // only the first offer.ingest.max-reported-errors rejections are listed
+    private List<BulkOfferError> errors;
+    private boolean errors_truncated;
+    // false when the upload held its admission slot for admission.ingestion.max-hold and the lines after
+    // the last reported error were not read; send those again
+    private boolean complete;
+    private long elapsed_ms;
+    private long offers_per_second;
+}
@@ -0,0 +1,80 @@
+package com.springboot.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the apply_offer path. Every meter is registered up front so
+ * recording is a plain counter or histogram update with no tag lookups.
+ */
+@Component
+public class CartOfferMetrics {
+
+	private final Timer applyOffer;
+	private final Map<OfferType, Counter> matched = new EnumMap<>(OfferType.class);
+	private final Counter unmatched;
+	private final Counter segmentUnavailable;
+	private final Counter noCandidates;
+	private final Counter shed;
+	private final Counter routed;
+
+	@Autowired
+	public CartOfferMetrics(MeterRegistry registry, OfferStore offerStore) {
+		this.applyOffer = Timer.builder("cart.apply_offer")
+				.description("Time to price a cart, including the segment lookup")
+				.publishPercentileHistogram()
+				.register(registry);
+		for (OfferType type : OfferType.values()) {
+			matched.put(type, outcome(registry, "matched", type.name()));
+		}
+		this.unmatched = outcome(registry, "unmatched", "none");
+		this.segmentUnavailable = outcome(registry, "segment_unavailable", "none");
+		this.noCandidates = outcome(registry, "no_candidates", "none");
+		this.shed = outcome(registry, "shed", "none");
+		this.routed = Counter.builder("cart.apply_offer.routed")
+				.description("Carts priced by the node owning their restaurant instead of this one")
+				.register(registry);
+		Gauge.builder("offers.store.size", offerStore, OfferStore::size)
+				.description("Offers currently held in the offer store")
+				.register(registry);
+	}
+
+	private static Counter outcome(MeterRegistry registry, String outcome, String offerType) {
+		return Counter.builder("cart.apply_offer.outcome")
+				.tag("outcome", outcome)
+				.tag("offer_type", offerType)
+				.register(registry);
+	}
+
+	public void recordApply(long startNanos) {
+		applyOffer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void matched(OfferType type) {
+		matched.get(type).increment();
+	}
+
+	public void unmatched(String userSegment) {
+		(userSegment == null ? segmentUnavailable : unmatched).increment();
+	}
+
+	public void noCandidates() {
+		noCandidates.increment();
+	}
+
+	public void shed() {
+		shed.increment();
+	}
+
+	public void routed() {
+		routed.increment();
+	}
+}
@@ -0,0 +1,112 @@
+package com.springboot.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sequenced log of the most recent {@link OfferStore} mutations, so replicas
+ * and downstream caches can follow the store without reading all of it again.
+ *
+ * A change's sequence is the store version its mutation produced, so the
+ * offers of a {@link OfferStore.Snapshot} at version N followed by every
+ * change after N rebuild the store. The store's combiner appends each batch
+ * before publishing it, and the oldest changes are dropped once more than
+ * offer.feed.retained-offers offers are held. A reader asking for changes that
+ * were dropped, or for a sequence past the end because this process restarted
+ * since (the epoch tells), has to start over from a snapshot.
+ */
+final class ChangeFeed {
+
+	private final long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+	private final int retainedOffers;
+	// ring of the changes held, oldest at head; the length is always a power of two
+	private OfferChange[] changes = new OfferChange[16];
+	private int head;
+	private int count;
+	private long offers;
+	private long lastSequence;
+
+	ChangeFeed(int retainedOffers, long version) {
+		this.retainedOffers = retainedOffers;
+		this.lastSequence = version;
+	}
+
+	long epoch() {
+		return epoch;
+	}
+
+	// Called by the store's combiner with the batch it is about to publish.
+	synchronized void append(List<OfferStore.Mutation> batch, long beforeVersion) {
+		if (beforeVersion != lastSequence) {
+			// not expected, but a gap would make the sequences lie, so readers start over from a snapshot instead
+			Arrays.fill(changes, null);
+			head = 0;
+			count = 0;
+			offers = 0;
+		}
+		long sequence = beforeVersion;
+		for (OfferStore.Mutation mutation : batch) {
+			OfferChange change = toChange(++sequence, mutation);
+			if (count == changes.length) {
+				grow();
+			}
+			changes[(head + count) & (changes.length - 1)] = change;
+			count++;
+			offers += weight(change);
+		}
+		lastSequence = sequence;
+		while (count > 0 && offers > retainedOffers) {
+			offers -= weight(changes[head]);
+			changes[head] = null;
+			head = (head + 1) & (changes.length - 1);
+			count--;
+		}
+	}
+
+	// The changes after the given sequence, oldest first and at most limit of them.
+	synchronized OfferChanges since(long after, int limit) {
+		long first = lastSequence - count + 1;
+		if (after < first - 1 || after > lastSequence) {
+			return new OfferChanges(epoch, true, lastSequence, Collections.<OfferChange>emptyList());
+		}
+		int n = (int) Math.min(Math.max(limit, 0), lastSequence - after);
+		int start = head + (int) (after + 1 - first);
+		List<OfferChange> result = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			result.add(changes[(start + i) & (changes.length - 1)]);
+		}
+		return new OfferChanges(epoch, false, lastSequence, result);
+	}
+
+	private void grow() {
+		OfferChange[] grown = new OfferChange[changes.length * 2];
+		for (int i = 0; i < count; i++) {
+			grown[i] = changes[(head + i) & (changes.length - 1)];
+		}
+		changes = grown;
+		head = 0;
+	}
+
+	private static OfferChange toChange(long sequence, OfferStore.Mutation mutation) {
+		if (mutation.refreshed.length > 0) {
+			List<Integer> restaurantIds = new ArrayList<>(mutation.refreshed.length);
+			for (int restaurantId : mutation.refreshed) {
+				restaurantIds.add(restaurantId);
+			}
+			return new OfferChange(sequence, OfferChange.REFRESH, null, restaurantIds);
+		}
+		List<OfferRequest> added = new ArrayList<>(mutation.offers.size());
+		for (CompiledOffer offer : mutation.offers) {
+			added.add(offer.getOffer());
+		}
+		return new OfferChange(sequence, mutation.reset ? OfferChange.RESET : OfferChange.ADD, added, null);
+	}
+
+	// a change without offers still takes a slot, so a run of resets cannot grow the feed without bound
+	private static int weight(OfferChange change) {
+		return change.getOffers() == null ? 1 : Math.max(1, change.getOffers().size());
+	}
+}
@@ -0,0 +1,132 @@
+package com.springboot.controller;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count-based circuit breaker for calls to a dependency.
+ *
+ * CLOSED lets every call through and keeps the outcomes of the last
+ * {@code windowSize} calls. Once at least {@code minimumCalls} are recorded and
+ * the failure rate reaches the threshold it moves to OPEN, where calls are
+ * rejected without being made. After {@code openDuration} it moves to
+ * HALF_OPEN and lets {@code halfOpenProbes} calls through: if they all succeed
+ * it closes again, and any failure reopens it.
+ *
+ * Callers take a permit with {@link #acquire()} and report the outcome against
+ * the epoch it returned, so a slow call started before a transition cannot
+ * close or reopen the breaker afterwards.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, HALF_OPEN, OPEN
+	}
+
+	public static final long REJECTED = -1;
+
+	private final boolean[] window;
+	private final int minimumCalls;
+	private final double failureRateThreshold;
+	private final long openNanos;
+	private final int halfOpenProbes;
+	private final LongAdder rejected = new LongAdder();
+
+	// written under the lock, read without it on the CLOSED fast path
+	private volatile State state = State.CLOSED;
+	private volatile long epoch;
+	// the rest is guarded by this
+	private long openedAt;
+	private int recorded;
+	private int next;
+	private int failures;
+	private int probesStarted;
+	private int probesSucceeded;
+
+	public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openDuration, TimeUnit unit,
+			int halfOpenProbes) {
+		this.window = new boolean[windowSize];
+		this.minimumCalls = Math.min(minimumCalls, windowSize);
+		this.failureRateThreshold = failureRateThreshold;
+		this.openNanos = unit.toNanos(openDuration);
+		this.halfOpenProbes = halfOpenProbes;
+	}
+
+	// A breaker that never opens.
+	public static CircuitBreaker disabled() {
+		return new CircuitBreaker(1, 1, Double.POSITIVE_INFINITY, 0, TimeUnit.NANOSECONDS, 1);
+	}
+
+	// Returns the epoch to report the outcome against, or REJECTED when the call must not be made.
+	public long acquire() {
+		// epoch is read first: if a transition slips in between, the outcome is reported against a stale epoch and ignored
+		long current = epoch;
+		if (state == State.CLOSED) {
+			return current;
+		}
+		synchronized (this) {
+			if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+				transition(State.HALF_OPEN);
+			}
+			if (state == State.HALF_OPEN && probesStarted < halfOpenProbes) {
+				probesStarted++;
+				return epoch;
+			}
+			if (state == State.CLOSED) {
+				return epoch;
+			}
+		}
+		rejected.increment();
+		return REJECTED;
+	}
+
+	public synchronized void record(long callEpoch, boolean success) {
+		if (callEpoch != epoch) {
+			return;
+		}
+		if (state == State.HALF_OPEN) {
+			if (!success) {
+				transition(State.OPEN);
+			} else if (++probesSucceeded >= halfOpenProbes) {
+				transition(State.CLOSED);
+			}
+		} else if (state == State.CLOSED) {
+			if (recorded == window.length) {
+				if (!window[next]) {
+					failures--;
+				}
+			} else {
+				recorded++;
+			}
+			window[next] = success;
+			next = (next + 1) % window.length;
+			if (!success) {
+				failures++;
+				if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+					transition(State.OPEN);
+				}
+			}
+		}
+	}
+
+	private void transition(State to) {
+		state = to;
+		epoch++;
+		recorded = 0;
+		next = 0;
+		failures = 0;
+		probesStarted = 0;
+		probesSucceeded = 0;
+		if (to == State.OPEN) {
+			openedAt = System.nanoTime();
+		}
+	}
+
+	public State state() {
+		return state;
+	}
+
+	public long rejected() {
+		return rejected.sum();
+	}
+}
@@ -0,0 +1,134 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP client for calls between the nodes of a cluster: a replica reading the
+ * leader's change feed and snapshot and forwarding offer writes to it, and a
+ * node routing a cart to the node that owns its restaurant.
+ *
+ * Every call carries {@link #FORWARDED_HEADER}, so the node receiving it
+ * handles the request itself rather than routing it on again. Writes answer
+ * with the leader's store version in {@link #VERSION_HEADER}, and a routed cart
+ * carries the version the routing node had reached, which the owner catches
+ * up to before pricing it.
+ */
+@Component
+public class ClusterClient implements DisposableBean {
+
+	public static final String FORWARDED_HEADER = "X-Offer-Forwarded";
+	public static final String VERSION_HEADER = "X-Offer-Version";
+
+	private static final ObjectMapper MAPPER = WireFormat.JSON.mapper();
+
+	private final CloseableHttpClient httpClient;
+	private final RequestConfig routingConfig;
+
+	@Autowired
+	public ClusterClient(ClusterProperties properties) {
+		ClusterProperties.Client client = properties.getClient();
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(client.getMaxConnections());
+		connectionManager.setDefaultMaxPerRoute(client.getMaxConnections());
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout((int) client.getConnectTimeout().toMillis())
+				.setConnectionRequestTimeout((int) client.getConnectTimeout().toMillis())
+				.setSocketTimeout((int) client.getReadTimeout().toMillis())
+				.build();
+		this.routingConfig = RequestConfig.copy(requestConfig)
+				.setSocketTimeout((int) properties.getRouting().getTimeout().toMillis())
+				.build();
+		this.httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.evictIdleConnections(30, TimeUnit.SECONDS)
+				.disableCookieManagement()
+				.build();
+	}
+
+	public <T> T get(String url, Class<T> type) throws IOException {
+		return execute(new HttpGet(url), type).body;
+	}
+
+	public <T> Reply<T> post(String url, Object body, Class<T> type) throws IOException {
+		HttpPost post = new HttpPost(url);
+		post.setEntity(new ByteArrayEntity(MAPPER.writeValueAsBytes(body), ContentType.APPLICATION_JSON));
+		return execute(post, type);
+	}
+
+	// Streams the body through as it is read, for bulk uploads
+	public <T> Reply<T> post(String url, InputStream body, String contentType, Class<T> type) throws IOException {
+		HttpPost post = new HttpPost(url);
+		post.setEntity(new InputStreamEntity(body, ContentType.parse(contentType)));
+		return execute(post, type);
+	}
+
+	// A cart sent to the node owning its restaurant, bounded by cluster.routing.timeout
+	public ApplyOfferResponse route(String nodeUrl, ApplyOfferRequest cart, long version) throws IOException {
+		HttpPost post = new HttpPost(nodeUrl + "/api/v1/cart/apply_offer");
+		post.setConfig(routingConfig);
+		post.setHeader(VERSION_HEADER, Long.toString(version));
+		post.setEntity(new ByteArrayEntity(MAPPER.writeValueAsBytes(cart), ContentType.APPLICATION_JSON));
+		return execute(post, ApplyOfferResponse.class).body;
+	}
+
+	// Throws on any failure, including an error status, so the caller decides how to degrade.
+	private <T> Reply<T> execute(HttpRequestBase request, Class<T> type) throws IOException {
+		request.setHeader("accept", "application/json");
+		request.setHeader(FORWARDED_HEADER, "true");
+		try (CloseableHttpResponse response = httpClient.execute(request)) {
+			HttpEntity entity = response.getEntity();
+			int status = response.getStatusLine().getStatusCode();
+			if (status >= 400) {
+				EntityUtils.consumeQuietly(entity);
+				throw new IOException(request.getURI() + " returned HTTP " + status);
+			}
+			T body = null;
+			if (entity != null) {
+				try (InputStream content = entity.getContent()) {
+					body = type == Void.class ? null : MAPPER.readValue(content, type);
+					EntityUtils.consume(entity);
+				}
+			}
+			Header version = response.getFirstHeader(VERSION_HEADER);
+			return new Reply<>(body, version == null ? -1 : Long.parseLong(version.getValue()));
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		httpClient.close();
+	}
+
+	public static final class Reply<T> {
+		final T body;
+		// the leader's store version once the write was applied, or -1 when the response did not say
+		final long version;
+
+		Reply(T body, long version) {
+			this.body = body;
+			this.version = version;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.springboot.controller;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cluster")
+public class ClusterProperties {
+    // base URL of the node offers are written to, e.g. http://10.0.0.1:8080; when set this node is a replica
+    // that forwards offer writes there and follows its change feed
+    private String leaderUrl;
+
+    private Replica replica = new Replica();
+
+    private Routing routing = new Routing();
+
+    private Client client = new Client();
+
+    @Data
+    public static class Replica {
+        // how often the leader's change feed is polled
+        private Duration pollInterval = Duration.ofMillis(100);
+        // changes fetched per request while catching up
+        private int batchSize = 1000;
+        // a forwarded write returns once this replica has applied it, or after this long
+        private Duration writeVisibilityTimeout = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Routing {
+        // send each cart to the node owning its restaurant on a consistent-hash ring of the nodes below
+        private boolean enabled = false;
+        // base URL the other nodes reach this one at; must be one of the nodes
+        private String selfUrl;
+        // base URLs of every node on the ring, this one included
+        private List<String> nodes = new ArrayList<>();
+        // ring points per node; more points spread restaurants more evenly
+        private int virtualNodes = 128;
+        // a routed cart the owner has not priced within this is priced here instead
+        private Duration timeout = Duration.ofSeconds(1);
+
+        private Breaker breaker = new Breaker();
+    }
+
+    @Data
+    public static class Breaker {
+        // an owner failing this share of its last window-size routed carts is skipped for open-duration,
+        // and its carts are priced here without waiting for the timeout
+        private int windowSize = 20;
+        private int minimumCalls = 5;
+        private double failureRateThreshold = 0.5;
+        private Duration openDuration = Duration.ofSeconds(5);
+        private int halfOpenProbes = 1;
+    }
+
+    @Data
+    public static class Client {
+        private int maxConnections = 100;
+        private Duration connectTimeout = Duration.ofMillis(250);
+        // a snapshot of a large store can take a while, so this bounds feed and snapshot reads too
+        private Duration readTimeout = Duration.ofSeconds(10);
+    }
+}
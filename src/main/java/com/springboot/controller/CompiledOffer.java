@@ -0,0 +1,93 @@
+package com.springboot.controller;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable form of an {@link OfferRequest}, built once when the offer is stored.
+ * The offer type is resolved to an {@link OfferType} and segment names to
+ * the store's {@link SegmentIds}, so pricing a cart is a single virtual call with no string
+ * work and no allocation. A missing validity bound becomes the earliest or
+ * latest possible time, so checking the window needs no null checks.
+ */
+public final class CompiledOffer {
+
+	private final OfferRequest offer;
+	private final int restaurantId;
+	private final OfferType type;
+	private final int value;
+	private final int[] segmentIds;
+	private final long validFrom;
+	private final long validUntil;
+
+	private CompiledOffer(OfferRequest offer, OfferType type, int value, int[] segmentIds) {
+		this.offer = offer;
+		this.restaurantId = offer.getRestaurant_id();
+		this.type = type;
+		this.value = value;
+		this.segmentIds = segmentIds;
+		this.validFrom = offer.getValid_from() == null ? Long.MIN_VALUE : offer.getValid_from();
+		this.validUntil = offer.getValid_until() == null ? Long.MAX_VALUE : offer.getValid_until();
+	}
+
+	static CompiledOffer compile(OfferRequest offer, SegmentIds ids) {
+		// non-positive values never change the cart, so they price like an unknown type
+		OfferType type = offer.getOffer_value() > 0 ? OfferType.of(offer.getOffer_type()) : OfferType.NONE;
+		List<String> segments = offer.getCustomer_segment();
+		int[] segmentIds = new int[segments == null ? 0 : segments.size()];
+		int count = 0;
+		for (int i = 0; i < segmentIds.length; i++) {
+			// a null entry would otherwise share the id of a failed segment lookup and match it
+			if (segments.get(i) != null) {
+				segmentIds[count++] = ids.intern(segments.get(i));
+			}
+		}
+		return new CompiledOffer(offer, type, offer.getOffer_value(),
+				count == segmentIds.length ? segmentIds : Arrays.copyOf(segmentIds, count));
+	}
+
+	// Safety check for negative values: a matched offer never prices a cart below zero
+	public int apply(int cartValue) {
+		return Math.max(0, type.discount(cartValue, value));
+	}
+
+	public OfferRequest getOffer() {
+		return offer;
+	}
+
+	public int getRestaurantId() {
+		return restaurantId;
+	}
+
+	public OfferType getType() {
+		return type;
+	}
+
+	public int getValue() {
+		return value;
+	}
+
+	public long getValidFrom() {
+		return validFrom;
+	}
+
+	public long getValidUntil() {
+		return validUntil;
+	}
+
+	boolean hasWindow() {
+		return validFrom != Long.MIN_VALUE || validUntil != Long.MAX_VALUE;
+	}
+
+	boolean activeAt(long nowMillis) {
+		return validFrom <= nowMillis && nowMillis < validUntil;
+	}
+
+	boolean expiredAt(long nowMillis) {
+		return nowMillis >= validUntil;
+	}
+
+	int[] segmentIds() {
+		return segmentIds;
+	}
+}
@@ -0,0 +1,75 @@
+package com.springboot.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Consistent-hash ring assigning restaurant ids to nodes. Each node is placed
+ * at a number of pseudo-random points and a restaurant belongs to the node at
+ * the first point at or after its own hash, so adding or removing a node only
+ * moves the restaurants on the arcs it gains or loses.
+ *
+ * The points are kept as a sorted int array searched with a binary search, so
+ * a lookup allocates nothing. Immutable once built.
+ */
+final class ConsistentHashRing {
+
+	private final int[] points;
+	private final String[] owners;
+
+	ConsistentHashRing(List<String> nodes, int virtualNodes) {
+		if (nodes.isEmpty() || virtualNodes <= 0) {
+			throw new IllegalArgumentException("A hash ring needs at least one node and one point per node");
+		}
+		long[] placed = new long[nodes.size() * virtualNodes];
+		int i = 0;
+		for (int node = 0; node < nodes.size(); node++) {
+			for (int point = 0; point < virtualNodes; point++) {
+				// the hash in the high half sorts the points, the node index in the low half breaks ties
+				placed[i++] = ((long) hash(nodes.get(node) + "#" + point) << 32) | node;
+			}
+		}
+		Arrays.sort(placed);
+		this.points = new int[placed.length];
+		this.owners = new String[placed.length];
+		for (i = 0; i < placed.length; i++) {
+			points[i] = (int) (placed[i] >> 32);
+			owners[i] = nodes.get((int) placed[i]);
+		}
+	}
+
+	String owner(int restaurantId) {
+		int key = mix(restaurantId);
+		int index = Arrays.binarySearch(points, key);
+		if (index < 0) {
+			index = -index - 1;
+			if (index == points.length) {
+				index = 0;
+			}
+		} else {
+			// collisions are rare, but a binary search can land on any of the equal points
+			while (index > 0 && points[index - 1] == key) {
+				index--;
+			}
+		}
+		return owners[index];
+	}
+
+	private static int hash(String node) {
+		CRC32 crc = new CRC32();
+		crc.update(node.getBytes(StandardCharsets.UTF_8));
+		return mix((int) crc.getValue());
+	}
+
+	// MurmurHash3's finalizer, so neighbouring ids land far apart on the ring
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
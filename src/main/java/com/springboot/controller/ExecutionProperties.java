@@ -0,0 +1,13 @@
+package com.springboot.controller;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "execution")
+public class ExecutionProperties {
+    // run request handling and batch segment lookups on virtual threads; needs JDK 21+, ignored otherwise
+    private boolean virtualThreads = false;
+}
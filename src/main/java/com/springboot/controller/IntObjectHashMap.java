@@ -0,0 +1,174 @@
+package com.springboot.controller;
+
+/**
+ * Open-addressing hash map keyed by primitive ints, so restaurant and segment
+ * ids are looked up without boxing. Values must not be null.
+ */
+public class IntObjectHashMap<V> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private int[] keys;
+	private Object[] values;
+	private int size;
+	private int resizeAt;
+
+	public IntObjectHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public IntObjectHashMap(int expectedSize) {
+		int capacity = tableSizeFor((int) Math.ceil(Math.max(expectedSize, 2) / LOAD_FACTOR));
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+		this.resizeAt = (int) (capacity * LOAD_FACTOR);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int mask = keys.length - 1;
+		int i = mix(key) & mask;
+		Object value;
+		while ((value = values[i]) != null) {
+			if (keys[i] == key) {
+				return (V) value;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("null values are not supported");
+		}
+		int mask = keys.length - 1;
+		int i = mix(key) & mask;
+		Object existing;
+		while ((existing = values[i]) != null) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return (V) existing;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size > resizeAt) {
+			rehash(keys.length << 1);
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int mask = keys.length - 1;
+		int i = mix(key) & mask;
+		Object value;
+		while ((value = values[i]) != null) {
+			if (keys[i] == key) {
+				values[i] = null;
+				size--;
+				// shift back the entries that probed past the freed slot, so lookups still reach them
+				int gap = i;
+				for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+					int home = mix(keys[j]) & mask;
+					if (((j - home) & mask) >= ((j - gap) & mask)) {
+						keys[gap] = keys[j];
+						values[gap] = values[j];
+						values[j] = null;
+						gap = j;
+					}
+				}
+				return (V) value;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	public V putIfAbsent(int key, V value) {
+		V existing = get(key);
+		if (existing == null) {
+			put(key, value);
+		}
+		return existing;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		keys = new int[DEFAULT_CAPACITY];
+		values = new Object[DEFAULT_CAPACITY];
+		resizeAt = (int) (DEFAULT_CAPACITY * LOAD_FACTOR);
+		size = 0;
+	}
+
+	public IntObjectHashMap<V> copy() {
+		IntObjectHashMap<V> copy = new IntObjectHashMap<>(2);
+		copy.keys = keys.clone();
+		copy.values = values.clone();
+		copy.size = size;
+		copy.resizeAt = resizeAt;
+		return copy;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryConsumer<V> consumer) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				consumer.accept(keys[i], (V) values[i]);
+			}
+		}
+	}
+
+	public interface EntryConsumer<V> {
+		void accept(int key, V value);
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[capacity];
+		values = new Object[capacity];
+		resizeAt = (int) (capacity * LOAD_FACTOR);
+		int mask = capacity - 1;
+		for (int j = 0; j < oldValues.length; j++) {
+			if (oldValues[j] != null) {
+				int i = mix(oldKeys[j]) & mask;
+				while (values[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "IntObjectHashMap{size=" + size + ", capacity=" + keys.length + "}";
+	}
+
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static int tableSizeFor(int n) {
+		int capacity = Integer.highestOneBit(Math.max(n - 1, 1)) << 1;
+		return Math.max(capacity, 2);
+	}
+}
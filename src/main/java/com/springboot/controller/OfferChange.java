@@ -0,0 +1,27 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OfferChange {
+    public static final String ADD = "ADD";
+    public static final String RESET = "RESET";
+    public static final String REFRESH = "REFRESH";
+
+    // the store version this change produced
+    private long sequence;
+    private String type;
+    // the offers added, or for a RESET the offers the store was reset to
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<OfferRequest> offers;
+    // for a REFRESH, the restaurants whose offers started or ended
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<Integer> restaurant_ids;
+}
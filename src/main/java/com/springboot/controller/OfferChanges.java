@@ -0,0 +1,19 @@
+package com.springboot.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OfferChanges {
+    // changes from another epoch, i.e. from before the serving node restarted, do not continue these
+    private long epoch;
+    // the changes asked for are no longer held; start over from /api/v1/replication/snapshot
+    private boolean snapshot_required;
+    private long last_sequence;
+    private List<OfferChange> changes;
+}
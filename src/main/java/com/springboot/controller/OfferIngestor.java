@@ -0,0 +1,140 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads offers from a newline-delimited JSON stream, one {@link OfferRequest}
+ * per line. The body is read a line at a time and valid offers are handed to
+ * the store in fixed-size chunks, so memory stays flat however large the
+ * upload is. Bad lines are reported by line number and do not stop the load.
+ */
+@Component
+public class OfferIngestor {
+
+	private static final ObjectReader OFFER_READER = new ObjectMapper()
+			.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+			.readerFor(OfferRequest.class);
+
+	private final OfferProperties.Ingest properties;
+
+	@Autowired
+	public OfferIngestor(OfferProperties properties) {
+		this.properties = properties.getIngest();
+	}
+
+	// Stops reading once maxNanos have passed, keeping every offer read so far.
+	public BulkOfferResponse ingest(InputStream body, OfferStore offerStore, long maxNanos) throws IOException {
+		long start = System.nanoTime();
+		LineReader reader = new LineReader(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)),
+				properties.getMaxLineLength());
+		List<OfferRequest> chunk = new ArrayList<>(properties.getChunkSize());
+		List<BulkOfferError> errors = new ArrayList<>();
+		long lines = 0;
+		long accepted = 0;
+		long rejected = 0;
+		boolean complete = true;
+
+		String line;
+		while ((line = reader.next()) != null) {
+			if (System.nanoTime() - start > maxNanos) {
+				complete = false;
+				break;
+			}
+			lines++;
+			String error;
+			if (reader.overlong) {
+				error = "line exceeds " + properties.getMaxLineLength() + " characters";
+			} else if (line.trim().isEmpty()) {
+				continue;
+			} else {
+				error = parse(line, chunk);
+			}
+			if (error == null) {
+				accepted++;
+				if (chunk.size() >= properties.getChunkSize()) {
+					offerStore.addAll(chunk);
+					chunk.clear();
+				}
+			} else {
+				rejected++;
+				if (errors.size() < properties.getMaxReportedErrors()) {
+					errors.add(new BulkOfferError(lines, error));
+				}
+			}
+		}
+		offerStore.addAll(chunk);
+		boolean truncated = rejected > errors.size();
+		if (!complete) {
+			errors.add(new BulkOfferError(lines + 1, "upload stopped after " + maxNanos / 1_000_000
+					+ " ms; this line and the rest were not read"));
+		}
+
+		long elapsedNanos = Math.max(System.nanoTime() - start, 1);
+		return new BulkOfferResponse(lines, accepted, rejected, errors, truncated, complete,
+				elapsedNanos / 1_000_000, accepted * 1_000_000_000L / elapsedNanos);
+	}
+
+	// Returns null and adds the offer to the chunk when the line is valid, otherwise the reason it was rejected.
+	private static String parse(String line, List<OfferRequest> chunk) {
+		OfferRequest offer;
+		try {
+			offer = OFFER_READER.readValue(line);
+		} catch (JsonProcessingException e) {
+			return "invalid offer: " + e.getOriginalMessage();
+		}
+		String problem = OfferValidator.problem(offer);
+		if (problem == null) {
+			chunk.add(offer);
+		}
+		return problem;
+	}
+
+	// Reads '\n' or "\r\n" terminated lines, keeping at most maxLength characters of any one line.
+	static final class LineReader {
+		private final Reader reader;
+		private final int maxLength;
+		private final StringBuilder line = new StringBuilder();
+		boolean overlong;
+
+		LineReader(Reader reader, int maxLength) {
+			this.reader = reader;
+			this.maxLength = maxLength;
+		}
+
+		String next() throws IOException {
+			line.setLength(0);
+			overlong = false;
+			int c = reader.read();
+			if (c == -1) {
+				return null;
+			}
+			while (c != -1 && c != '\n') {
+				if (line.length() < maxLength) {
+					line.append((char) c);
+				} else {
+					overlong = true;
+				}
+				c = reader.read();
+			}
+			int length = line.length();
+			if (length > 0 && line.charAt(length - 1) == '\r') {
+				line.setLength(length - 1);
+			}
+			return line.toString();
+		}
+	}
+}
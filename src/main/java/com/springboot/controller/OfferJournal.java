@@ -0,0 +1,466 @@
+package com.springboot.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only, memory-mapped journal of {@link OfferStore} mutations, so the
+ * store survives a restart without every offer being posted again.
+ *
+ * Each batch the store's combiner publishes is appended as one record per
+ * mutation (an add of some offers, a reset, or a refresh of restaurants whose
+ * offers started or ended) before readers can see it. When a journal file
+ * fills up a new one is started and the store as it stood at the end of the
+ * full file is written out as a compacted snapshot in the background, after
+ * which older journal files are deleted. Startup maps the
+ * snapshot and replays only the journal files written after it.
+ *
+ * Records carry a CRC, so a write torn by a crash ends the replay at the last
+ * intact record instead of failing it. Offers are written restaurant by
+ * restaurant in insertion order, which is all that match priority depends on.
+ */
+@Component
+public class OfferJournal implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(OfferJournal.class);
+
+	private static final int JOURNAL_MAGIC = 0x4F464A4C; // "OFJL"
+	private static final int SNAPSHOT_MAGIC = 0x4F46534E; // "OFSN"
+	// version 2 adds the offer validity window and refresh records; version 1 files are still read
+	static final byte FORMAT_VERSION = 2;
+	// per-offer flag bits for optional fields, each followed by its value after the segments
+	static final byte VALID_FROM = 1;
+	static final byte VALID_UNTIL = 2;
+	static final byte KNOWN_OFFER_FLAGS = VALID_FROM | VALID_UNTIL;
+
+	private static final int JOURNAL_HEADER = 16; // magic, format version, 3 reserved bytes, generation
+	private static final int RECORD_HEADER = 8; // body length, body CRC32
+	private static final byte ADD = 1;
+	private static final byte RESET = 2;
+	private static final byte REFRESH = 3;
+	private static final String SNAPSHOT_FILE = "offers.snapshot";
+	private static final String JOURNAL_PREFIX = "journal-";
+	private static final String JOURNAL_SUFFIX = ".log";
+
+	private final Path dir;
+	private final int segmentSize;
+	private final boolean fsync;
+	private final ExecutorService compactor;
+
+	// the fields below are only used by the store's combiner, under its write lock
+	private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(256);
+	private MappedByteBuffer active;
+	private long generation;
+
+	@Autowired
+	public OfferJournal(OfferProperties properties) {
+		OfferProperties.Journal journal = properties.getJournal();
+		this.dir = journal.getDir() == null || journal.getDir().isEmpty() ? null : Paths.get(journal.getDir());
+		this.segmentSize = (int) Math.min(journal.getSegmentSize(), Integer.MAX_VALUE);
+		this.fsync = journal.isFsync();
+		this.compactor = dir == null ? null : Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "offer-journal-compactor");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public boolean isEnabled() {
+		return dir != null;
+	}
+
+	// Reads the snapshot and the journal tail back as mutations, and opens the last journal file for appends.
+	Recovery recover(SegmentIds segmentIds) throws IOException {
+		long start = System.nanoTime();
+		Files.createDirectories(dir);
+		Files.deleteIfExists(dir.resolve(SNAPSHOT_FILE + ".tmp"));
+		List<OfferStore.Mutation> mutations = new ArrayList<>();
+		long snapshotGeneration = 0;
+		long version = 0;
+		int offers = 0;
+
+		Path snapshotFile = dir.resolve(SNAPSHOT_FILE);
+		if (Files.exists(snapshotFile)) {
+			ByteBuffer snapshot = map(snapshotFile, FileChannel.MapMode.READ_ONLY, Files.size(snapshotFile));
+			checkSnapshot(snapshot, snapshotFile);
+			snapshotGeneration = snapshot.getLong();
+			version = snapshot.getLong();
+			int count = snapshot.getInt();
+			List<CompiledOffer> restored = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				restored.add(CompiledOffer.compile(readOffer(snapshot), segmentIds));
+			}
+			mutations.add(new OfferStore.Mutation(restored, false));
+			offers += count;
+		}
+
+		int records = 0;
+		for (long journalGeneration : journalGenerations()) {
+			Path file = journalFile(journalGeneration);
+			if (journalGeneration < snapshotGeneration) {
+				Files.delete(file);
+				continue;
+			}
+			MappedByteBuffer buffer = map(file, FileChannel.MapMode.READ_WRITE, Files.size(file));
+			checkJournal(buffer, file, journalGeneration);
+			int replayed = mutations.size();
+			// position and limit go through Buffer throughout: the ByteBuffer-returning overloads only exist from Java 9
+			((Buffer) buffer).position(replay(buffer, mutations, segmentIds));
+			for (int i = replayed; i < mutations.size(); i++) {
+				records++;
+				offers += mutations.get(i).offers.size();
+			}
+			active = buffer;
+			generation = journalGeneration;
+		}
+		if (active == null) {
+			open(Math.max(snapshotGeneration, 1), segmentSize);
+		} else {
+			clearTail(active);
+		}
+		version += records;
+
+		log.info("offer_journal_recovered dir={} snapshot_generation={} journal_records={} offers={} elapsed_ms={}",
+				dir, snapshotGeneration, records, offers, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		return new Recovery(mutations, version);
+	}
+
+	// Called by the store's combiner with the batch it is about to publish and the snapshot it replaces.
+	void append(List<OfferStore.Mutation> batch, OfferStore.Snapshot before) {
+		try {
+			List<byte[]> records = new ArrayList<>(batch.size());
+			int bytes = 0;
+			for (OfferStore.Mutation mutation : batch) {
+				byte[] record = encode(mutation);
+				records.add(record);
+				bytes += RECORD_HEADER + record.length;
+			}
+			if (active.remaining() < bytes) {
+				roll(before, bytes);
+			}
+			CRC32 crc = new CRC32();
+			for (byte[] record : records) {
+				int position = active.position();
+				crc.reset();
+				crc.update(record, 0, record.length);
+				((Buffer) active).position(position + RECORD_HEADER);
+				active.put(record);
+				active.putInt(position + 4, (int) crc.getValue());
+				// the length goes in last, so a record torn by a crash reads as the end of the journal
+				active.putInt(position, record.length);
+			}
+			if (fsync) {
+				active.force();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not append to the offer journal in " + dir, e);
+		}
+	}
+
+	// Starts the next journal file and compacts everything before it into a snapshot in the background.
+	private void roll(OfferStore.Snapshot before, int needed) throws IOException {
+		active.force();
+		long next = generation + 1;
+		open(next, (int) Math.min((long) JOURNAL_HEADER + Math.max(segmentSize, needed), Integer.MAX_VALUE));
+		compactor.execute(() -> compact(before, next));
+	}
+
+	private void open(long journalGeneration, int size) throws IOException {
+		MappedByteBuffer buffer = map(journalFile(journalGeneration), FileChannel.MapMode.READ_WRITE, size);
+		buffer.putInt(JOURNAL_MAGIC);
+		buffer.put(FORMAT_VERSION);
+		buffer.put(new byte[3]);
+		buffer.putLong(journalGeneration);
+		buffer.force();
+		active = buffer;
+		generation = journalGeneration;
+	}
+
+	private void compact(OfferStore.Snapshot snapshot, long coveredGeneration) {
+		long start = System.nanoTime();
+		Path tmp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE)) {
+				BufferedOutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+				CheckedOutputStream checked = new CheckedOutputStream(buffered, new CRC32());
+				DataOutputStream out = new DataOutputStream(checked);
+				out.writeInt(SNAPSHOT_MAGIC);
+				out.writeByte(FORMAT_VERSION);
+				out.writeLong(coveredGeneration);
+				out.writeLong(snapshot.version());
+				out.writeInt(snapshot.size());
+				try {
+					snapshot.forEachRestaurant((restaurantId, offers) -> {
+						try {
+							for (CompiledOffer offer : offers) {
+								writeOffer(out, offer.getOffer());
+							}
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				}
+				out.flush();
+				new DataOutputStream(buffered).writeLong(checked.getChecksum().getValue());
+				buffered.flush();
+				channel.force(true);
+			}
+			Files.move(tmp, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			for (long journalGeneration : journalGenerations()) {
+				if (journalGeneration < coveredGeneration) {
+					Files.deleteIfExists(journalFile(journalGeneration));
+				}
+			}
+			log.info("offer_journal_compacted generation={} offers={} elapsed_ms={}",
+					coveredGeneration, snapshot.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		} catch (IOException | RuntimeException e) {
+			// the journal files are only deleted after a snapshot is in place, so nothing is lost
+			log.warn("offer_journal_compaction_failed generation={} error={}", coveredGeneration, e.toString());
+		}
+	}
+
+	private byte[] encode(OfferStore.Mutation mutation) throws IOException {
+		scratch.reset();
+		DataOutputStream out = new DataOutputStream(scratch);
+		if (mutation.refreshed.length > 0) {
+			// replayed only to keep the store version; validity is evaluated again at recovery
+			out.writeByte(REFRESH);
+			out.writeInt(mutation.refreshed.length);
+			for (int restaurantId : mutation.refreshed) {
+				out.writeInt(restaurantId);
+			}
+			return scratch.toByteArray();
+		}
+		out.writeByte(mutation.reset ? RESET : ADD);
+		out.writeInt(mutation.offers.size());
+		for (CompiledOffer offer : mutation.offers) {
+			writeOffer(out, offer.getOffer());
+		}
+		return scratch.toByteArray();
+	}
+
+	private static OfferStore.Mutation decode(ByteBuffer body, SegmentIds segmentIds) throws IOException {
+		byte kind = body.get();
+		if (kind != ADD && kind != RESET && kind != REFRESH) {
+			throw new IOException("Unknown offer journal record kind " + kind);
+		}
+		int count = body.getInt();
+		if (kind == REFRESH) {
+			int[] restaurantIds = new int[count];
+			for (int i = 0; i < count; i++) {
+				restaurantIds[i] = body.getInt();
+			}
+			return new OfferStore.Mutation(restaurantIds);
+		}
+		List<CompiledOffer> offers = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			offers.add(CompiledOffer.compile(readOffer(body), segmentIds));
+		}
+		return new OfferStore.Mutation(offers, kind == RESET);
+	}
+
+	// Returns the offset just past the last intact record.
+	private static int replay(ByteBuffer buffer, List<OfferStore.Mutation> into, SegmentIds segmentIds) throws IOException {
+		int position = JOURNAL_HEADER;
+		CRC32 crc = new CRC32();
+		while (buffer.limit() - position >= RECORD_HEADER) {
+			int length = buffer.getInt(position);
+			if (length <= 0 || length > buffer.limit() - position - RECORD_HEADER) {
+				break;
+			}
+			ByteBuffer body = buffer.duplicate();
+			((Buffer) body).limit(position + RECORD_HEADER + length).position(position + RECORD_HEADER);
+			crc.reset();
+			crc.update(body.duplicate());
+			if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+				break;
+			}
+			into.add(decode(body, segmentIds));
+			position += RECORD_HEADER + length;
+		}
+		return position;
+	}
+
+	static void writeOffer(DataOutput out, OfferRequest offer) throws IOException {
+		out.writeByte((offer.getValid_from() == null ? 0 : VALID_FROM) | (offer.getValid_until() == null ? 0 : VALID_UNTIL));
+		out.writeInt(offer.getRestaurant_id());
+		out.writeInt(offer.getOffer_value());
+		writeString(out, offer.getOffer_type());
+		List<String> segments = offer.getCustomer_segment();
+		out.writeInt(segments == null ? -1 : segments.size());
+		if (segments != null) {
+			for (String segment : segments) {
+				writeString(out, segment);
+			}
+		}
+		if (offer.getValid_from() != null) {
+			out.writeLong(offer.getValid_from());
+		}
+		if (offer.getValid_until() != null) {
+			out.writeLong(offer.getValid_until());
+		}
+	}
+
+	static OfferRequest readOffer(ByteBuffer in) throws IOException {
+		byte flags = in.get();
+		if ((flags & ~KNOWN_OFFER_FLAGS) != 0) {
+			throw new IOException("Unsupported offer flags " + flags);
+		}
+		int restaurantId = in.getInt();
+		int value = in.getInt();
+		String type = readString(in);
+		int count = in.getInt();
+		List<String> segments = null;
+		if (count >= 0) {
+			segments = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				segments.add(readString(in));
+			}
+		}
+		Long validFrom = (flags & VALID_FROM) == 0 ? null : in.getLong();
+		Long validUntil = (flags & VALID_UNTIL) == 0 ? null : in.getLong();
+		return new OfferRequest(restaurantId, type, value, segments, validFrom, validUntil);
+	}
+
+	private static void writeString(DataOutput out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer in) {
+		int length = in.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void checkJournal(ByteBuffer buffer, Path file, long expectedGeneration) throws IOException {
+		if (buffer.limit() < JOURNAL_HEADER || buffer.getInt(0) != JOURNAL_MAGIC) {
+			throw new IOException(file + " is not an offer journal");
+		}
+		if (buffer.get(4) > FORMAT_VERSION) {
+			throw new IOException(file + " has unsupported format version " + buffer.get(4));
+		}
+		if (buffer.getLong(8) != expectedGeneration) {
+			throw new IOException(file + " has generation " + buffer.getLong(8) + ", expected " + expectedGeneration);
+		}
+	}
+
+	private static void checkSnapshot(ByteBuffer buffer, Path file) throws IOException {
+		if (buffer.limit() < 33 || buffer.getInt() != SNAPSHOT_MAGIC) {
+			throw new IOException(file + " is not an offer snapshot");
+		}
+		byte format = buffer.get();
+		if (format > FORMAT_VERSION) {
+			throw new IOException(file + " has unsupported format version " + format);
+		}
+		ByteBuffer content = buffer.duplicate();
+		((Buffer) content).position(0).limit(buffer.limit() - 8);
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		if (crc.getValue() != buffer.getLong(buffer.limit() - 8)) {
+			throw new IOException(file + " is corrupt (checksum mismatch)");
+		}
+	}
+
+	// Zeroes anything left after the last intact record, so a torn write cannot be mistaken for a record later.
+	private static void clearTail(MappedByteBuffer buffer) {
+		if (buffer.remaining() >= 4 && buffer.getInt(buffer.position()) != 0) {
+			for (int i = buffer.position(); i < buffer.limit(); i++) {
+				buffer.put(i, (byte) 0);
+			}
+			buffer.force();
+		}
+	}
+
+	private List<Long> journalGenerations() throws IOException {
+		List<Long> generations = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				generations.add(Long.parseLong(name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length()), 16));
+			}
+		}
+		Collections.sort(generations);
+		return generations;
+	}
+
+	private Path journalFile(long journalGeneration) {
+		return dir.resolve(String.format("%s%016x%s", JOURNAL_PREFIX, journalGeneration, JOURNAL_SUFFIX));
+	}
+
+	private static MappedByteBuffer map(Path file, FileChannel.MapMode mode, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException(file + " is too large to map");
+		}
+		StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+				? new StandardOpenOption[] {StandardOpenOption.READ}
+				: new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+		// the mapping stays valid after the channel is closed
+		try (FileChannel channel = FileChannel.open(file, options)) {
+			return channel.map(mode, 0, size);
+		}
+	}
+
+	@Override
+	public void destroy() throws InterruptedException {
+		if (compactor != null) {
+			compactor.shutdown();
+			compactor.awaitTermination(30, TimeUnit.SECONDS);
+		}
+		if (active != null) {
+			active.force();
+		}
+	}
+
+	static final class Recovery {
+		final List<OfferStore.Mutation> mutations;
+		final long version;
+
+		Recovery(List<OfferStore.Mutation> mutations, long version) {
+			this.mutations = mutations;
+			this.version = version;
+		}
+	}
+}
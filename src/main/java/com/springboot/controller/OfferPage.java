@@ -0,0 +1,20 @@
+package com.springboot.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OfferPage {
+    private long epoch;
+    // the store version the page was read at; follow /api/v1/offer/changes?since=version from here
+    private long version;
+    // restaurant by restaurant in ascending id order, each restaurant's offers in insertion order
+    private List<OfferRequest> offers;
+    // pass back as cursor for the next page; null on the last page
+    private String next_cursor;
+}
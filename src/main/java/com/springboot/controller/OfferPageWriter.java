@@ -0,0 +1,115 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes one page of a {@link OfferStore.Snapshot} as an {@link OfferPage},
+ * an offer at a time straight to the generator, so a page is never built as a
+ * list first and the response streams out as it is written.
+ *
+ * Restaurants are listed in ascending id order and each one's offers in
+ * insertion order. The cursor names the restaurant and offer index the next
+ * page starts at. Offers are only ever appended to a restaurant, so a cursor
+ * stays valid while the store changes between pages; a reset, or an offer
+ * ending, can still shift the pages, which the differing page versions show.
+ *
+ * A whole snapshot for a replica is streamed the same way, as a
+ * {@link ReplicationSnapshot}.
+ */
+final class OfferPageWriter {
+
+	private static final Map<WireFormat, ObjectWriter> OFFER_WRITERS = new EnumMap<>(WireFormat.class);
+
+	static {
+		for (WireFormat format : WireFormat.values()) {
+			OFFER_WRITERS.put(format, format.mapper().writerFor(OfferRequest.class));
+		}
+	}
+
+	private OfferPageWriter() {
+	}
+
+	static ObjectWriter offerWriter(WireFormat format) {
+		return OFFER_WRITERS.get(format);
+	}
+
+	static void writeSnapshot(JsonGenerator out, ObjectWriter offerWriter, long epoch, OfferStore.Snapshot snapshot)
+			throws IOException {
+		out.writeStartObject();
+		out.writeNumberField("epoch", epoch);
+		out.writeNumberField("sequence", snapshot.version());
+		out.writeArrayFieldStart("offers");
+		for (int restaurantId : snapshot.restaurantIds()) {
+			for (CompiledOffer offer : snapshot.offers(restaurantId)) {
+				offerWriter.writeValue(out, offer.getOffer());
+			}
+		}
+		out.writeEndArray();
+		out.writeEndObject();
+	}
+
+	static void write(JsonGenerator out, ObjectWriter offerWriter, long epoch, OfferStore.Snapshot snapshot,
+			Integer restaurantId, String cursor, int limit) throws IOException {
+		int[] restaurantIds = restaurantId == null ? snapshot.restaurantIds() : new int[] {restaurantId};
+		int position = 0;
+		int skip = 0;
+		if (cursor != null) {
+			int[] start = parse(cursor);
+			position = Arrays.binarySearch(restaurantIds, start[0]);
+			if (position < 0) {
+				// that restaurant has no offers any more, so the page starts at the next one
+				position = -position - 1;
+			} else {
+				skip = start[1];
+			}
+		}
+
+		out.writeStartObject();
+		out.writeNumberField("epoch", epoch);
+		out.writeNumberField("version", snapshot.version());
+		out.writeArrayFieldStart("offers");
+		String next = null;
+		int written = 0;
+		for (; position < restaurantIds.length && next == null; position++) {
+			List<CompiledOffer> offers = snapshot.offers(restaurantIds[position]);
+			for (int i = skip; i < offers.size(); i++) {
+				if (written == limit) {
+					next = restaurantIds[position] + ":" + i;
+					break;
+				}
+				offerWriter.writeValue(out, offers.get(i).getOffer());
+				written++;
+			}
+			skip = 0;
+		}
+		if (next == null && written == limit && position < restaurantIds.length) {
+			next = restaurantIds[position] + ":0";
+		}
+		out.writeEndArray();
+		out.writeStringField("next_cursor", next);
+		out.writeEndObject();
+	}
+
+	// "restaurant:index", as written into next_cursor; checked before anything is written
+	static int[] parse(String cursor) {
+		int separator = cursor.lastIndexOf(':');
+		try {
+			int[] start = {Integer.parseInt(cursor.substring(0, separator)), Integer.parseInt(cursor.substring(separator + 1))};
+			if (start[1] >= 0) {
+				return start;
+			}
+		} catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+			// reported below
+		}
+		throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid offer cursor " + cursor);
+	}
+}
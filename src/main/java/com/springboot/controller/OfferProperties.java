@@ -0,0 +1,72 @@
+package com.springboot.controller;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer")
+public class OfferProperties {
+    // FIRST_MATCH applies the offer added first for the segment; BEST_DISCOUNT the one giving the lowest price
+    private SelectionPolicy selectionPolicy = SelectionPolicy.FIRST_MATCH;
+
+    private Ingest ingest = new Ingest();
+
+    private DecisionLog decisionLog = new DecisionLog();
+
+    private Journal journal = new Journal();
+
+    private Validity validity = new Validity();
+
+    private Feed feed = new Feed();
+
+    private Namespaces namespaces = new Namespaces();
+
+    @Data
+    public static class Ingest {
+        // offers applied to the store per batch while a bulk upload streams in
+        private int chunkSize = 1000;
+        // lines longer than this are rejected without being parsed
+        private int maxLineLength = 64 * 1024;
+        private int maxReportedErrors = 100;
+    }
+
+    @Data
+    public static class DecisionLog {
+        // fraction of apply_offer decisions that are logged; 1.0 logs every cart, 0.0 none
+        private double sampleRate = 1.0;
+    }
+
+    @Data
+    public static class Journal {
+        // directory for the offer journal and its snapshots; the store is memory-only when unset
+        private String dir;
+        // size of each memory-mapped journal file; a full file is rolled over and compacted into a snapshot
+        private long segmentSize = 64L * 1024 * 1024;
+        // force every batch to disk before the write returns instead of leaving it to the OS
+        private boolean fsync = false;
+    }
+
+    @Data
+    public static class Validity {
+        // resolution of offer activation and expiry; an offer starts or stops matching at most this late
+        private Duration tickDuration = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class Feed {
+        // offers kept in the change feed; a replica further behind than this catches up from a snapshot instead
+        private int retainedOffers = 1_000_000;
+    }
+
+    @Data
+    public static class Namespaces {
+        // namespaces held at once besides the default one; creating another is refused until one is dropped
+        private int max = 10_000;
+        // offers kept in each namespace's change feed, which is served by /api/v1/offer/changes but never replicated
+        private int retainedOffers = 10_000;
+    }
+}
@@ -0,0 +1,86 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Offers of a namespace for downstream caches: a full listing in cursor pages
+ * tagged with the store version, and the changes since a version to keep a
+ * copy current without listing again.
+ */
+@RestController
+public class OfferReadController {
+
+	private static final int MAX_PAGE = 10_000;
+	private static final int MAX_CHANGES = 10_000;
+
+	@Autowired
+	OfferStores offerStores;
+
+	// Streamed as it is read from one snapshot; answers 304 while the namespace is unchanged since the ETag was issued
+	@GetMapping("/api/v1/offer")
+	public void offers(@RequestParam(value = "cursor", required = false) String cursor,
+			@RequestParam(value = "limit", defaultValue = "1000") int limit,
+			@RequestParam(value = "restaurant_id", required = false) Integer restaurantId,
+			@RequestHeader(value = OfferStores.HEADER, required = false) String namespace,
+			@RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+			@RequestHeader(value = "Accept", required = false) String accept,
+			HttpServletResponse response) throws IOException {
+		OfferStore store = offerStores.read(namespace);
+		OfferStore.Snapshot snapshot = store.snapshot();
+		WireFormat format = WireFormat.forAccept(accept);
+		String etag = etag(store.epoch(), snapshot.version(), format);
+		response.setHeader("ETag", etag);
+		response.setHeader("Vary", "Accept, " + OfferStores.HEADER);
+		response.setHeader(ClusterClient.VERSION_HEADER, Long.toString(snapshot.version()));
+		if (matches(ifNoneMatch, etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		if (cursor != null) {
+			// a bad cursor has to fail before the body is opened, which commits the response
+			OfferPageWriter.parse(cursor);
+		}
+		response.setContentType(format.contentType());
+		try (JsonGenerator out = format.mapper().getFactory().createGenerator(response.getOutputStream())) {
+			OfferPageWriter.write(out, OfferPageWriter.offerWriter(format), store.epoch(), snapshot, restaurantId, cursor,
+					Math.max(1, Math.min(limit, MAX_PAGE)));
+		}
+	}
+
+	@GetMapping("/api/v1/offer/changes")
+	public OfferChanges changes(@RequestParam("since") long since,
+			@RequestParam(value = "limit", defaultValue = "1000") int limit,
+			@RequestHeader(value = OfferStores.HEADER, required = false) String namespace) {
+		return offerStores.read(namespace).changesSince(since, Math.max(1, Math.min(limit, MAX_CHANGES)));
+	}
+
+	// The version alone repeats after a restart, so the feed epoch is part of the tag; each encoding of a
+	// page is a different byte sequence, so a strong tag also names the format
+	static String etag(long epoch, long version, WireFormat format) {
+		return "\"" + epoch + "." + version + "." + format.name().toLowerCase() + "\"";
+	}
+
+	static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			String tag = candidate.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals("*") || tag.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,245 @@
+package com.springboot.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps this node's {@link OfferStore} a copy of the leader's when
+ * cluster.leader-url is set. The replica loads the leader's snapshot, then
+ * polls its change feed and applies the changes in sequence order. When the
+ * feed no longer holds the changes it needs, or the leader has restarted and
+ * started a new epoch, it loads a snapshot again. Refresh changes are skipped,
+ * since each node starts and ends validity windows on its own timing wheel.
+ *
+ * Offer writes sent to a replica are forwarded to the leader and answered once
+ * the replica has applied them, so a client that posts an offer and then
+ * prices a cart on the same node sees the offer, as it would on a single node.
+ * Only the poller thread talks to the leader's feed: a request waiting for a
+ * write asks it for one extra catch-up, shared with every other request
+ * waiting at the time, and gives up at the visibility timeout.
+ */
+@Component
+public class OfferReplica implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(OfferReplica.class);
+
+	private final String leaderUrl;
+	private final int batchSize;
+	private final long visibilityTimeoutNanos;
+	private final OfferStore offerStore;
+	private final SegmentService segmentService;
+	private final ClusterClient client;
+	private final ScheduledExecutorService poller;
+	// only changed by sync, on the poller thread
+	private long epoch;
+	private volatile long appliedSequence = -1;
+	// completed once the poller has run a sync that started after it was set
+	private final AtomicReference<CompletableFuture<Void>> pendingCatchUp = new AtomicReference<>();
+
+	@Autowired
+	public OfferReplica(ClusterProperties properties, OfferStore offerStore, SegmentService segmentService,
+			ClusterClient client) {
+		String leader = properties.getLeaderUrl();
+		this.leaderUrl = leader == null || leader.isEmpty() ? null : leader.replaceAll("/+$", "");
+		this.batchSize = properties.getReplica().getBatchSize();
+		this.visibilityTimeoutNanos = properties.getReplica().getWriteVisibilityTimeout().toNanos();
+		this.offerStore = offerStore;
+		this.segmentService = segmentService;
+		this.client = client;
+		if (leaderUrl == null) {
+			this.poller = null;
+			return;
+		}
+		this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "offer-replica");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long intervalMillis = properties.getReplica().getPollInterval().toMillis();
+		poller.scheduleWithFixedDelay(this::poll, 0, intervalMillis, TimeUnit.MILLISECONDS);
+		log.info("offer_replica_started leader={}", leaderUrl);
+	}
+
+	public boolean isEnabled() {
+		return leaderUrl != null;
+	}
+
+	// The leader's store version this replica has caught up to, or -1 before its first snapshot.
+	public long appliedSequence() {
+		return appliedSequence;
+	}
+
+	public ApiResponse forwardOffer(OfferRequest offer) {
+		try {
+			return visible(client.post(leaderUrl + "/api/v1/offer", offer, ApiResponse.class));
+		} catch (IOException e) {
+			throw notForwarded(e);
+		}
+	}
+
+	public BulkOfferResponse forwardBulk(InputStream body) {
+		try {
+			return visible(client.post(leaderUrl + "/api/v1/offer/bulk", body, "application/x-ndjson", BulkOfferResponse.class));
+		} catch (IOException e) {
+			throw notForwarded(e);
+		}
+	}
+
+	public void forwardReset() {
+		try {
+			visible(client.post(leaderUrl + "/api/v1/test/reset", Collections.emptyMap(), Void.class));
+		} catch (IOException e) {
+			throw notForwarded(e);
+		}
+	}
+
+	private <T> T visible(ClusterClient.Reply<T> reply) {
+		if (reply.version >= 0 && !awaitSequence(reply.version)) {
+			log.warn("offer_replica_write_not_visible leader={} sequence={} applied={}", leaderUrl, reply.version, appliedSequence);
+		}
+		return reply.body;
+	}
+
+	private ResponseStatusException notForwarded(IOException e) {
+		log.warn("offer_replica_forward_failed leader={} error={}", leaderUrl, e.toString());
+		return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Could not forward the offer write to the leader at " + leaderUrl);
+	}
+
+	// Catches up at once rather than waiting for the next poll, for up to cluster.replica.write-visibility-timeout.
+	public boolean awaitSequence(long sequence) {
+		long deadline = System.nanoTime() + visibilityTimeoutNanos;
+		while (appliedSequence < sequence) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0 || poller == null) {
+				return false;
+			}
+			try {
+				catchUp().get(remaining, TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				return appliedSequence >= sequence;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			} catch (ExecutionException e) {
+				// never completed exceptionally; a failed sync is retried by the next round
+			}
+		}
+		return true;
+	}
+
+	// The catch-up every waiting request shares; the first to arrive queues it on the poller.
+	private CompletableFuture<Void> catchUp() {
+		while (true) {
+			CompletableFuture<Void> pending = pendingCatchUp.get();
+			if (pending != null) {
+				return pending;
+			}
+			CompletableFuture<Void> next = new CompletableFuture<>();
+			if (pendingCatchUp.compareAndSet(null, next)) {
+				try {
+					poller.execute(this::poll);
+				} catch (RejectedExecutionException e) {
+					pendingCatchUp.compareAndSet(next, null);
+					next.complete(null);
+				}
+				return next;
+			}
+		}
+	}
+
+	// A scheduled task that throws is never run again, so a failed poll is logged and retried next interval.
+	private void poll() {
+		// requests arriving from here on need a sync that starts after them, so they queue another
+		CompletableFuture<Void> waiting = pendingCatchUp.getAndSet(null);
+		try {
+			sync();
+		} catch (IOException | RuntimeException e) {
+			log.warn("offer_replica_sync_failed leader={} error={}", leaderUrl, e.toString());
+		} finally {
+			if (waiting != null) {
+				waiting.complete(null);
+			}
+		}
+	}
+
+	// Applies every change the leader has after the last one applied here. Runs on the poller thread only.
+	private void sync() throws IOException {
+		boolean reloaded = false;
+		if (appliedSequence < 0) {
+			loadSnapshot();
+			reloaded = true;
+		}
+		while (true) {
+			OfferChanges changes = client.get(leaderUrl + "/api/v1/replication/changes?after=" + appliedSequence
+					+ "&limit=" + batchSize, OfferChanges.class);
+			if (changes.isSnapshot_required() || changes.getEpoch() != epoch) {
+				if (reloaded) {
+					// the leader moved on past its own snapshot before we asked; the next poll starts over
+					throw new IOException("Leader at " + leaderUrl + " no longer holds the changes after its snapshot");
+				}
+				loadSnapshot();
+				reloaded = true;
+				continue;
+			}
+			for (OfferChange change : changes.getChanges()) {
+				apply(change);
+			}
+			if (changes.getChanges().size() < batchSize) {
+				return;
+			}
+		}
+	}
+
+	private void loadSnapshot() throws IOException {
+		ReplicationSnapshot snapshot = client.get(leaderUrl + "/api/v1/replication/snapshot", ReplicationSnapshot.class);
+		List<OfferRequest> offers = offers(snapshot.getOffers());
+		offerStore.replace(offers);
+		epoch = snapshot.getEpoch();
+		appliedSequence = snapshot.getSequence();
+		log.info("offer_replica_snapshot_loaded leader={} sequence={} offers={}", leaderUrl, snapshot.getSequence(), offers.size());
+	}
+
+	private void apply(OfferChange change) {
+		if (OfferChange.ADD.equals(change.getType())) {
+			offerStore.addAll(offers(change.getOffers()));
+		} else if (OfferChange.RESET.equals(change.getType())) {
+			offerStore.replace(offers(change.getOffers()));
+			// a reset on the leader clears its segment cache too, see /api/v1/test/reset
+			segmentService.invalidateAll();
+		}
+		appliedSequence = change.getSequence();
+	}
+
+	private static List<OfferRequest> offers(List<OfferRequest> offers) {
+		return offers == null ? Collections.<OfferRequest>emptyList() : offers;
+	}
+
+	@Override
+	public void destroy() {
+		if (poller != null) {
+			poller.shutdownNow();
+			CompletableFuture<Void> waiting = pendingCatchUp.getAndSet(null);
+			if (waiting != null) {
+				waiting.complete(null);
+			}
+		}
+	}
+}
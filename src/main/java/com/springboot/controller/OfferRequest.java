@@ -1,5 +1,6 @@
 package com.springboot.controller;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -15,4 +16,14 @@ public class OfferRequest {
     private int offer_value;
 
     private List<String> customer_segment;
+
+    // optional validity window in epoch millis: the offer matches from valid_from until just before valid_until
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long valid_from;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long valid_until;
+
+    public OfferRequest(int restaurant_id, String offer_type, int offer_value, List<String> customer_segment) {
+        this(restaurant_id, offer_type, offer_value, customer_segment, null, null);
+    }
 }
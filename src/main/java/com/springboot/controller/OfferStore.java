@@ -0,0 +1,559 @@
+package com.springboot.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Offers indexed by restaurant and then by customer segment, so matching a cart
+ * is two hash lookups instead of a scan over every offer.
+ *
+ * Within a restaurant the first offer added for a segment wins, which is the
+ * priority the old {@code findFirst()} scan gave. Each segment also keeps its
+ * largest FLATX and largest percentage offer, so the best discount for a cart
+ * under {@link SelectionPolicy#BEST_DISCOUNT} is chosen among three offers
+ * however many the restaurant has.
+ *
+ * Readers only dereference the current {@link Snapshot}, which is never mutated
+ * after it is published. Writers queue their change and whichever writer holds
+ * the write lock applies everything queued so far as one copy-on-write batch,
+ * so a burst of POSTs rebuilds the snapshot once rather than once per offer.
+ *
+ * With {@code offer.journal.dir} set every batch is also appended to the
+ * {@link OfferJournal} before it is published, and the store is rebuilt from
+ * the journal at startup.
+ *
+ * Every mutation is also recorded on a {@link ChangeFeed} under the store
+ * version it produces, which replicas and downstream caches follow from a
+ * snapshot of the store.
+ *
+ * Offers with a validity window are only indexed while the window is open. Each
+ * start and end is scheduled on a {@link TimingWheel} when the offer is added,
+ * and when it comes due the restaurant is re-indexed by a refresh mutation, so
+ * pricing a cart never looks at the time and nothing scans the store for
+ * offers that ended. An offer that has ended is dropped for good; one that has
+ * not started yet is kept, and counted, but never matched.
+ */
+@Component
+public class OfferStore implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(OfferStore.class);
+
+	private static final long DEFAULT_TICK_MILLIS = 100;
+	private static final int WHEEL_SIZE = 256;
+	// 256^4 ticks of 100ms is over 13 years, later deadlines just cascade again
+	private static final int WHEEL_LEVELS = 4;
+	private static final int DEFAULT_RETAINED_OFFERS = 1_000_000;
+
+	private final SegmentIds segmentIds = new SegmentIds();
+	private final AtomicReference<Snapshot> current = new AtomicReference<>(Snapshot.empty(segmentIds));
+	private final ConcurrentLinkedQueue<Mutation> pending = new ConcurrentLinkedQueue<>();
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private final OfferJournal journal;
+	private final ChangeFeed feed;
+	private final Clock clock;
+	private final long tickMillis;
+	private final TimingWheel<Integer> validity;
+	// runs the validity ticks of several stores when given; otherwise the store starts its own thread
+	private final ScheduledExecutorService sharedTicker;
+	// the rest is started by the first offer with a validity window, under the write lock
+	private ScheduledExecutorService ticker;
+	private ScheduledFuture<?> ticking;
+	private boolean destroyed;
+
+	public OfferStore() {
+		this(Clock.systemUTC());
+	}
+
+	OfferStore(Clock clock) {
+		this(clock, DEFAULT_TICK_MILLIS, DEFAULT_RETAINED_OFFERS);
+	}
+
+	OfferStore(Clock clock, long tickMillis, int retainedOffers) {
+		this(clock, tickMillis, retainedOffers, null);
+	}
+
+	// Memory-only, as for a namespace other than the default one, ticking on the given executor if there is one.
+	OfferStore(Clock clock, long tickMillis, int retainedOffers, ScheduledExecutorService sharedTicker) {
+		this.journal = null;
+		this.sharedTicker = sharedTicker;
+		this.feed = new ChangeFeed(retainedOffers, 0);
+		this.clock = clock;
+		this.tickMillis = tickMillis;
+		this.validity = new TimingWheel<>(tickMillis, WHEEL_SIZE, WHEEL_LEVELS, clock.millis());
+	}
+
+	@Autowired
+	public OfferStore(OfferJournal journal, OfferProperties properties) throws IOException {
+		this(journal, Clock.systemUTC(), properties.getValidity().getTickDuration().toMillis(),
+				properties.getFeed().getRetainedOffers());
+	}
+
+	OfferStore(OfferJournal journal, Clock clock, long tickMillis) throws IOException {
+		this(journal, clock, tickMillis, DEFAULT_RETAINED_OFFERS);
+	}
+
+	OfferStore(OfferJournal journal, Clock clock, long tickMillis, int retainedOffers) throws IOException {
+		this.journal = journal.isEnabled() ? journal : null;
+		this.sharedTicker = null;
+		this.clock = clock;
+		this.tickMillis = tickMillis;
+		this.validity = new TimingWheel<>(tickMillis, WHEEL_SIZE, WHEEL_LEVELS, clock.millis());
+		if (this.journal != null) {
+			OfferJournal.Recovery recovery = journal.recover(segmentIds);
+			long now = clock.millis();
+			// offers whose window ended while the service was down are dropped here
+			Snapshot recovered = current.get().apply(recovery.mutations, now).withVersion(recovery.version);
+			current.set(recovered);
+			recovered.forEachRestaurant((restaurantId, offers) -> {
+				for (CompiledOffer offer : offers) {
+					schedule(offer, now);
+				}
+			});
+		}
+		this.feed = new ChangeFeed(retainedOffers, current.get().version());
+	}
+
+	public void add(OfferRequest offer) {
+		apply(new Mutation(Collections.singletonList(CompiledOffer.compile(offer, segmentIds)), false));
+	}
+
+	public void addAll(Collection<OfferRequest> offers) {
+		if (!offers.isEmpty()) {
+			apply(new Mutation(compile(offers), false));
+		}
+	}
+
+	public void clear() {
+		apply(new Mutation(Collections.<CompiledOffer>emptyList(), true));
+	}
+
+	// Swaps every offer for the given ones in a single reset, as a replica does when it loads a snapshot.
+	public void replace(Collection<OfferRequest> offers) {
+		apply(new Mutation(compile(offers), true));
+	}
+
+	private List<CompiledOffer> compile(Collection<OfferRequest> offers) {
+		List<CompiledOffer> compiled = new ArrayList<>(offers.size());
+		for (OfferRequest offer : offers) {
+			compiled.add(CompiledOffer.compile(offer, segmentIds));
+		}
+		return compiled;
+	}
+
+	// Re-indexes the restaurants whose offers started or ended since the last call.
+	void refreshDue() {
+		List<Integer> due = validity.advance(clock.millis());
+		if (due.isEmpty()) {
+			return;
+		}
+		int[] restaurantIds = due.stream().mapToInt(Integer::intValue).distinct().toArray();
+		if (log.isDebugEnabled()) {
+			log.debug("offer_validity_refresh restaurants={}", restaurantIds.length);
+		}
+		apply(new Mutation(restaurantIds));
+	}
+
+	public CompiledOffer find(int restaurantId, String segment) {
+		return current.get().find(restaurantId, segment);
+	}
+
+	public CompiledOffer select(int restaurantId, String segment, int cartValue, SelectionPolicy policy) {
+		return current.get().select(restaurantId, segment, cartValue, policy);
+	}
+
+	public boolean hasCandidates(int restaurantId) {
+		return current.get().hasCandidates(restaurantId);
+	}
+
+	public int size() {
+		return current.get().size;
+	}
+
+	public Snapshot snapshot() {
+		return current.get();
+	}
+
+	// Identifies this process's change feed; sequences from another epoch do not continue it.
+	public long epoch() {
+		return feed.epoch();
+	}
+
+	public OfferChanges changesSince(long version, int limit) {
+		return feed.since(version, limit);
+	}
+
+	// Returns once the mutation is visible to readers, so a POST followed by an
+	// apply_offer from the same client always sees the new offer.
+	private void apply(Mutation mutation) {
+		pending.add(mutation);
+		writeLock.lock();
+		try {
+			if (!mutation.applied) {
+				List<Mutation> batch = new ArrayList<>();
+				Mutation next;
+				while ((next = pending.poll()) != null) {
+					batch.add(next);
+				}
+				try {
+					publish(batch);
+				} catch (RuntimeException e) {
+					for (Mutation failed : batch) {
+						failed.failure = e;
+					}
+				}
+				for (Mutation applied : batch) {
+					applied.applied = true;
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+		if (mutation.failure != null) {
+			throw mutation.failure;
+		}
+	}
+
+	private void publish(List<Mutation> batch) {
+		long now = clock.millis();
+		Snapshot before = current.get();
+		Snapshot after = before.apply(batch, now);
+		if (journal != null) {
+			journal.append(batch, before);
+		}
+		feed.append(batch, before.version());
+		current.set(after);
+		for (Mutation mutation : batch) {
+			if (mutation.reset) {
+				validity.clear();
+			}
+			for (CompiledOffer offer : mutation.offers) {
+				schedule(offer, now);
+			}
+		}
+	}
+
+	private void schedule(CompiledOffer offer, long now) {
+		if (!offer.hasWindow() || offer.expiredAt(now)) {
+			return;
+		}
+		if (offer.getValidFrom() > now) {
+			validity.schedule(offer.getValidFrom(), offer.getRestaurantId());
+		}
+		if (offer.getValidUntil() != Long.MAX_VALUE) {
+			validity.schedule(offer.getValidUntil(), offer.getRestaurantId());
+		}
+		if (ticking == null && !destroyed) {
+			ScheduledExecutorService executor = sharedTicker;
+			if (executor == null) {
+				executor = ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+					Thread thread = new Thread(runnable, "offer-validity");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+			ticking = executor.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	// A scheduled task that throws is never run again, so a failed refresh is logged and retried next tick.
+	private void tick() {
+		try {
+			refreshDue();
+		} catch (RuntimeException e) {
+			log.warn("offer_validity_refresh_failed error={}", e.toString());
+		}
+	}
+
+	@Override
+	public void destroy() {
+		writeLock.lock();
+		try {
+			destroyed = true;
+			if (ticking != null) {
+				ticking.cancel(false);
+			}
+			if (ticker != null) {
+				ticker.shutdownNow();
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	static class Mutation {
+		private static final int[] NO_RESTAURANTS = new int[0];
+
+		final List<CompiledOffer> offers;
+		final boolean reset;
+		// restaurants to re-index because one of their offers started or ended
+		final int[] refreshed;
+		// only written while holding the write lock, and read by the writer after it
+		boolean applied;
+		RuntimeException failure;
+
+		Mutation(List<CompiledOffer> offers, boolean reset) {
+			this.offers = offers;
+			this.reset = reset;
+			this.refreshed = NO_RESTAURANTS;
+		}
+
+		Mutation(int[] refreshed) {
+			this.offers = Collections.emptyList();
+			this.reset = false;
+			this.refreshed = refreshed;
+		}
+	}
+
+	public static final class Snapshot {
+		private final IntObjectHashMap<RestaurantOffers> byRestaurant;
+		// the store's dictionary, which every offer in the snapshot was compiled against
+		private final SegmentIds segmentIds;
+		private final int size;
+		private final long version;
+		// built on the first paged read of this snapshot; a race only builds it twice
+		private volatile int[] sortedRestaurantIds;
+
+		private Snapshot(IntObjectHashMap<RestaurantOffers> byRestaurant, SegmentIds segmentIds, int size, long version) {
+			this.byRestaurant = byRestaurant;
+			this.segmentIds = segmentIds;
+			this.size = size;
+			this.version = version;
+		}
+
+		static Snapshot empty(SegmentIds segmentIds) {
+			return new Snapshot(new IntObjectHashMap<RestaurantOffers>(), segmentIds, 0, 0);
+		}
+
+		public CompiledOffer find(int restaurantId, String segment) {
+			SegmentOffers offers = segmentOffers(restaurantId, segment);
+			return offers == null ? null : offers.first;
+		}
+
+		public CompiledOffer select(int restaurantId, String segment, int cartValue, SelectionPolicy policy) {
+			SegmentOffers offers = segmentOffers(restaurantId, segment);
+			if (offers == null) {
+				return null;
+			}
+			return policy == SelectionPolicy.BEST_DISCOUNT ? offers.best(cartValue) : offers.first;
+		}
+
+		private SegmentOffers segmentOffers(int restaurantId, String segment) {
+			RestaurantOffers offers = byRestaurant.get(restaurantId);
+			return offers == null ? null : offers.bySegment.get(segmentIds.lookup(segment));
+		}
+
+		// True when some offer of the restaurant targets at least one segment, i.e. when
+		// the user's segment could change the price and is worth resolving.
+		public boolean hasCandidates(int restaurantId) {
+			RestaurantOffers offers = byRestaurant.get(restaurantId);
+			return offers != null && !offers.bySegment.isEmpty();
+		}
+
+		public List<CompiledOffer> offers(int restaurantId) {
+			RestaurantOffers offers = byRestaurant.get(restaurantId);
+			return offers == null ? Collections.<CompiledOffer>emptyList() : offers.offers;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public long version() {
+			return version;
+		}
+
+		// Ids of the restaurants holding offers, ascending, so a listing can resume after any of them.
+		int[] restaurantIds() {
+			int[] ids = sortedRestaurantIds;
+			if (ids == null) {
+				int[] collected = new int[byRestaurant.size()];
+				int[] next = {0};
+				byRestaurant.forEach((restaurantId, offers) -> collected[next[0]++] = restaurantId);
+				Arrays.sort(collected);
+				sortedRestaurantIds = ids = collected;
+			}
+			return ids;
+		}
+
+		// Restaurants in table order, each with its offers in insertion order.
+		void forEachRestaurant(IntObjectHashMap.EntryConsumer<List<CompiledOffer>> consumer) {
+			byRestaurant.forEach((restaurantId, offers) -> consumer.accept(restaurantId, offers.offers));
+		}
+
+		Snapshot withVersion(long version) {
+			return new Snapshot(byRestaurant, segmentIds, size, version);
+		}
+
+		// Copies the restaurant table once per batch and only the restaurants the
+		// batch touches; untouched restaurants are shared with the previous snapshot.
+		// Validity windows of the touched restaurants are evaluated at nowMillis.
+		Snapshot apply(List<Mutation> batch, long nowMillis) {
+			IntObjectHashMap<RestaurantOffers> table = byRestaurant;
+			IntObjectHashMap<RestaurantOffers> copied = null;
+			Map<Integer, List<CompiledOffer>> added = new HashMap<>();
+			int newSize = size;
+			for (Mutation mutation : batch) {
+				if (mutation.reset) {
+					table = new IntObjectHashMap<>();
+					copied = table;
+					added.clear();
+					newSize = 0;
+				}
+				for (CompiledOffer offer : mutation.offers) {
+					List<CompiledOffer> offers = added.get(offer.getRestaurantId());
+					if (offers == null) {
+						offers = new ArrayList<>();
+						added.put(offer.getRestaurantId(), offers);
+					}
+					offers.add(offer);
+				}
+				for (int restaurantId : mutation.refreshed) {
+					if (!added.containsKey(restaurantId) && table.containsKey(restaurantId)) {
+						added.put(restaurantId, new ArrayList<CompiledOffer>());
+					}
+				}
+			}
+			if (added.isEmpty() && copied == null) {
+				return withVersion(version + batch.size());
+			}
+			if (copied == null) {
+				copied = table.copy();
+			}
+			for (Map.Entry<Integer, List<CompiledOffer>> entry : added.entrySet()) {
+				RestaurantOffers previous = copied.get(entry.getKey());
+				RestaurantOffers next = RestaurantOffers.extend(previous, entry.getValue(), nowMillis);
+				newSize += next.offers.size() - (previous == null ? 0 : previous.offers.size());
+				if (next.offers.isEmpty()) {
+					copied.remove(entry.getKey());
+				} else {
+					copied.put(entry.getKey(), next);
+				}
+			}
+			return new Snapshot(copied, segmentIds, newSize, version + batch.size());
+		}
+	}
+
+	// Offers that have not ended, in insertion order, and the index of those whose window is open.
+	static final class RestaurantOffers {
+		final List<CompiledOffer> offers;
+		final IntObjectHashMap<SegmentOffers> bySegment;
+		// some offer has a validity window, so the index is rebuilt instead of extended
+		final boolean windowed;
+
+		private RestaurantOffers(List<CompiledOffer> offers, IntObjectHashMap<SegmentOffers> bySegment, boolean windowed) {
+			this.offers = offers;
+			this.bySegment = bySegment;
+			this.windowed = windowed;
+		}
+
+		static RestaurantOffers extend(RestaurantOffers previous, List<CompiledOffer> added, long nowMillis) {
+			boolean windowed = previous != null && previous.windowed;
+			for (CompiledOffer offer : added) {
+				windowed |= offer.hasWindow();
+			}
+			if (windowed) {
+				return rebuild(previous, added, nowMillis);
+			}
+			List<CompiledOffer> offers = previous == null ? new ArrayList<CompiledOffer>() : new ArrayList<>(previous.offers);
+			IntObjectHashMap<SegmentOffers> bySegment = previous == null ? new IntObjectHashMap<SegmentOffers>(4) : previous.bySegment.copy();
+			for (CompiledOffer offer : added) {
+				offers.add(offer);
+				index(bySegment, offer);
+			}
+			return new RestaurantOffers(Collections.unmodifiableList(offers), bySegment, false);
+		}
+
+		// Insertion order is kept, so an offer that starts later still ranks by when it was added.
+		private static RestaurantOffers rebuild(RestaurantOffers previous, List<CompiledOffer> added, long nowMillis) {
+			List<CompiledOffer> offers = new ArrayList<>((previous == null ? 0 : previous.offers.size()) + added.size());
+			IntObjectHashMap<SegmentOffers> bySegment = new IntObjectHashMap<>(4);
+			boolean windowed = false;
+			for (List<CompiledOffer> source : previous == null ? Collections.singletonList(added) : Arrays.asList(previous.offers, added)) {
+				for (CompiledOffer offer : source) {
+					if (offer.expiredAt(nowMillis)) {
+						continue;
+					}
+					offers.add(offer);
+					windowed |= offer.hasWindow();
+					if (offer.activeAt(nowMillis)) {
+						index(bySegment, offer);
+					}
+				}
+			}
+			return new RestaurantOffers(Collections.unmodifiableList(offers), bySegment, windowed);
+		}
+
+		private static void index(IntObjectHashMap<SegmentOffers> bySegment, CompiledOffer offer) {
+			for (int segmentId : offer.segmentIds()) {
+				bySegment.put(segmentId, SegmentOffers.with(bySegment.get(segmentId), offer));
+			}
+		}
+	}
+
+	// The offers of one restaurant that can match one segment, reduced to the only ones either policy can pick.
+	// Shared between snapshots, so never changed once built.
+	static final class SegmentOffers {
+		final CompiledOffer first;
+		final CompiledOffer bestFlat;
+		final CompiledOffer bestPercentage;
+
+		private SegmentOffers(CompiledOffer first, CompiledOffer bestFlat, CompiledOffer bestPercentage) {
+			this.first = first;
+			this.bestFlat = bestFlat;
+			this.bestPercentage = bestPercentage;
+		}
+
+		static SegmentOffers with(SegmentOffers previous, CompiledOffer offer) {
+			if (previous == null) {
+				return new SegmentOffers(offer, offer.getType() == OfferType.FLATX ? offer : null,
+						offer.getType() == OfferType.PERCENTAGE ? offer : null);
+			}
+			// the larger value always gives the larger discount within a type; ties keep the earlier offer
+			CompiledOffer bestFlat = previous.bestFlat;
+			CompiledOffer bestPercentage = previous.bestPercentage;
+			if (offer.getType() == OfferType.FLATX && (bestFlat == null || offer.getValue() > bestFlat.getValue())) {
+				bestFlat = offer;
+			} else if (offer.getType() == OfferType.PERCENTAGE
+					&& (bestPercentage == null || offer.getValue() > bestPercentage.getValue())) {
+				bestPercentage = offer;
+			} else {
+				return previous;
+			}
+			return new SegmentOffers(previous.first, bestFlat, bestPercentage);
+		}
+
+		// Lowest price among the candidates; on a tie the first offer, then FLATX, is kept.
+		CompiledOffer best(int cartValue) {
+			CompiledOffer best = first;
+			int bestPrice = first.apply(cartValue);
+			if (bestFlat != null && bestFlat.apply(cartValue) < bestPrice) {
+				best = bestFlat;
+				bestPrice = bestFlat.apply(cartValue);
+			}
+			if (bestPercentage != null && bestPercentage.apply(cartValue) < bestPrice) {
+				best = bestPercentage;
+			}
+			return best;
+		}
+	}
+}
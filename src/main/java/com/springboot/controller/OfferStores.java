@@ -0,0 +1,123 @@
+package com.springboot.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Clock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.regex.Pattern;
+
+/**
+ * Offer stores by namespace, picked per request by the {@link #HEADER} header.
+ * Requests without it use the default store, the only one that is journaled
+ * and replicated. Any other namespace gets its own memory-only
+ * {@link OfferStore} the first time an offer is written to it, so tenants, or
+ * test runs sharing one instance, never see each other's offers. Dropping a
+ * namespace removes one map entry, however many offers it holds.
+ *
+ * Namespaces are cheap to create and many are short-lived, so their stores
+ * share one validity-ticker thread and keep a much shorter change feed than
+ * the default store, see offer.namespaces.retained-offers.
+ */
+@Component
+public class OfferStores implements DisposableBean {
+
+	public static final String HEADER = "X-Offer-Namespace";
+
+	private static final Logger log = LoggerFactory.getLogger(OfferStores.class);
+	private static final Pattern NAME = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+	private final OfferStore defaultStore;
+	private final ConcurrentMap<String, OfferStore> namespaces = new ConcurrentHashMap<>();
+	// read side of a namespace nothing was written to; never written itself
+	private final OfferStore empty = new OfferStore();
+	private final int maxNamespaces;
+	private final long tickMillis;
+	private final int retainedOffers;
+	private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "offer-validity-namespaces");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	@Autowired
+	public OfferStores(OfferStore defaultStore, OfferProperties properties) {
+		this.defaultStore = defaultStore;
+		this.maxNamespaces = properties.getNamespaces().getMax();
+		this.tickMillis = properties.getValidity().getTickDuration().toMillis();
+		this.retainedOffers = properties.getNamespaces().getRetainedOffers();
+	}
+
+	public static boolean isDefault(String namespace) {
+		return namespace == null;
+	}
+
+	// The store to price carts against; a namespace that holds no offers prices every cart at full value.
+	public OfferStore read(String namespace) {
+		if (isDefault(namespace)) {
+			return defaultStore;
+		}
+		OfferStore store = namespaces.get(check(namespace));
+		return store == null ? empty : store;
+	}
+
+	// The store to add offers to, created on first use.
+	public OfferStore write(String namespace) {
+		if (isDefault(namespace)) {
+			return defaultStore;
+		}
+		OfferStore store = namespaces.get(check(namespace));
+		if (store != null) {
+			return store;
+		}
+		if (namespaces.size() >= maxNamespaces) {
+			throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+					"Too many offer namespaces, drop unused ones with /api/v1/test/reset");
+		}
+		return namespaces.computeIfAbsent(namespace, created -> {
+			if (log.isDebugEnabled()) {
+				log.debug("offer_namespace_created namespace={}", created);
+			}
+			return new OfferStore(Clock.systemUTC(), tickMillis, retainedOffers, ticker);
+		});
+	}
+
+	// Forgets a namespace and all of its offers; true if it held any.
+	public boolean drop(String namespace) {
+		OfferStore store = namespaces.remove(check(namespace));
+		if (store == null) {
+			return false;
+		}
+		store.destroy();
+		return true;
+	}
+
+	public int namespaces() {
+		return namespaces.size();
+	}
+
+	private static String check(String namespace) {
+		if (!NAME.matcher(namespace).matches()) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					HEADER + " must be 1 to 64 letters, digits, '.', '_' or '-'");
+		}
+		return namespace;
+	}
+
+	@Override
+	public void destroy() {
+		for (OfferStore store : namespaces.values()) {
+			store.destroy();
+		}
+		empty.destroy();
+		ticker.shutdownNow();
+	}
+}
@@ -0,0 +1,44 @@
+package com.springboot.controller;
+
+/**
+ * Discount rule of an offer, resolved once from the free-form offer_type string
+ * when the offer is stored. Types that match no rule (e.g. "BOGO", or "flatx"
+ * since matching is case-sensitive) become NONE and leave the cart unchanged.
+ */
+public enum OfferType {
+
+	FLATX {
+		@Override
+		int discount(int cartValue, int offerValue) {
+			return cartValue - offerValue;
+		}
+	},
+	// Handles FLAT_PERCENT or PERCENTAGE
+	PERCENTAGE {
+		@Override
+		int discount(int cartValue, int offerValue) {
+			return (int) Math.round(cartValue - (cartValue * offerValue / 100.0));
+		}
+	},
+	NONE {
+		@Override
+		int discount(int cartValue, int offerValue) {
+			return cartValue;
+		}
+	};
+
+	abstract int discount(int cartValue, int offerValue);
+
+	public static OfferType of(String offerType) {
+		if (offerType == null) {
+			return NONE;
+		}
+		if (offerType.equals("FLATX")) {
+			return FLATX;
+		}
+		if (offerType.contains("PERCENT")) {
+			return PERCENTAGE;
+		}
+		return NONE;
+	}
+}
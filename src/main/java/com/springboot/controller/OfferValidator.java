@@ -0,0 +1,36 @@
+package com.springboot.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * The checks an offer has to pass before it is stored, shared by the single
+ * and the bulk offer endpoints. An offer_type the store does not know is
+ * still accepted and simply never discounts, as it always has.
+ */
+final class OfferValidator {
+
+	private OfferValidator() {
+	}
+
+	// The reason the offer is rejected, or null when it can be stored.
+	static String problem(OfferRequest offer) {
+		if (offer == null) {
+			return "offer must be a JSON object";
+		}
+		if (offer.getOffer_type() == null || offer.getOffer_type().isEmpty()) {
+			return "offer_type is required";
+		}
+		if (offer.getValid_from() != null && offer.getValid_until() != null && offer.getValid_until() <= offer.getValid_from()) {
+			return "valid_until must be after valid_from";
+		}
+		return null;
+	}
+
+	static void check(OfferRequest offer) {
+		String problem = problem(offer);
+		if (problem != null) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, problem);
+		}
+	}
+}
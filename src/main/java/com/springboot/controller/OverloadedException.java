@@ -0,0 +1,22 @@
+package com.springboot.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A request shed by admission control. Answered 503 with a Retry-After header,
+ * see {@link AutowiredController#overloaded}.
+ */
+public class OverloadedException extends ResponseStatusException {
+
+	private final long retryAfterSeconds;
+
+	public OverloadedException(String reason, long retryAfterSeconds) {
+		super(HttpStatus.SERVICE_UNAVAILABLE, reason);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+}
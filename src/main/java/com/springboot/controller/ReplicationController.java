@@ -0,0 +1,42 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * The offer store's change feed and snapshots, for replicas to follow this
+ * node; see {@link OfferReplica}.
+ */
+@RestController
+public class ReplicationController {
+
+	private static final int MAX_CHANGES = 10_000;
+
+	@Autowired
+	OfferStore offerStore;
+
+	// A ReplicationSnapshot, written an offer at a time rather than built in memory first
+	@GetMapping("/api/v1/replication/snapshot")
+	public void snapshot(@RequestHeader(value = "Accept", required = false) String accept,
+			HttpServletResponse response) throws IOException {
+		OfferStore.Snapshot snapshot = offerStore.snapshot();
+		WireFormat format = WireFormat.forAccept(accept);
+		response.setContentType(format.contentType());
+		try (JsonGenerator out = format.mapper().getFactory().createGenerator(response.getOutputStream())) {
+			OfferPageWriter.writeSnapshot(out, OfferPageWriter.offerWriter(format), offerStore.epoch(), snapshot);
+		}
+	}
+
+	@GetMapping("/api/v1/replication/changes")
+	public OfferChanges changes(@RequestParam("after") long after,
+			@RequestParam(value = "limit", defaultValue = "1000") int limit) {
+		return offerStore.changesSince(after, Math.max(1, Math.min(limit, MAX_CHANGES)));
+	}
+}
@@ -0,0 +1,18 @@
+package com.springboot.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReplicationSnapshot {
+    private long epoch;
+    // the store version the offers are as of; the change feed continues after it
+    private long sequence;
+    // every stored offer, restaurant by restaurant in insertion order
+    private List<OfferRequest> offers;
+}
@@ -0,0 +1,17 @@
+package com.springboot.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SegmentCacheStats {
+    private long size;
+    private long hits;
+    private long misses;
+    private long negative_hits;
+    private long evictions;
+    private double hit_rate;
+}
@@ -0,0 +1,160 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP client for the user segment service. Connections are pooled and kept
+ * alive between calls, and every call is bounded by connect, read and overall
+ * deadlines so a slow segment service cannot hold request threads indefinitely.
+ *
+ * {@link #fetchAsync(int)} makes the same call on a non-blocking client so the
+ * caller's thread is not held while the lookup is in flight.
+ */
+@Component
+public class SegmentClient implements DisposableBean {
+
+	private static final ObjectReader SEGMENT_READER = new ObjectMapper().readerFor(SegmentResponse.class);
+
+	private final String url;
+	private final long deadlineMillis;
+	private final CloseableHttpClient httpClient;
+	private final CloseableHttpAsyncClient asyncClient;
+	private final ScheduledThreadPoolExecutor deadlineTimer;
+
+	@Autowired
+	public SegmentClient(SegmentProperties properties) {
+		SegmentProperties.Client client = properties.getClient();
+		this.url = properties.getUrl();
+		this.deadlineMillis = client.getDeadline().toMillis();
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(client.getMaxConnections());
+		connectionManager.setDefaultMaxPerRoute(client.getMaxConnections());
+
+		final long keepAliveMillis = client.getKeepAlive().toMillis();
+		ConnectionKeepAliveStrategy keepAlive = (response, context) -> {
+			long advertised = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+			return advertised > 0 ? Math.min(advertised, keepAliveMillis) : keepAliveMillis;
+		};
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout((int) client.getConnectTimeout().toMillis())
+				.setConnectionRequestTimeout((int) client.getConnectTimeout().toMillis())
+				.setSocketTimeout((int) client.getReadTimeout().toMillis())
+				.build();
+		this.httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(keepAlive)
+				.evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS)
+				.disableCookieManagement()
+				.build();
+		this.asyncClient = HttpAsyncClients.custom()
+				.setMaxConnTotal(client.getMaxConnections())
+				.setMaxConnPerRoute(client.getMaxConnections())
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(keepAlive)
+				.disableCookieManagement()
+				.build();
+		this.asyncClient.start();
+
+		this.deadlineTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "segment-deadline");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.deadlineTimer.setRemoveOnCancelPolicy(true);
+	}
+
+	// Throws on any failure, including the overall deadline, so the caller decides how to degrade.
+	public SegmentResponse fetch(int userId) throws IOException {
+		HttpGet get = new HttpGet(url + "?user_id=" + userId);
+		get.setHeader("accept", "application/json");
+		ScheduledFuture<?> deadline = deadlineTimer.schedule(get::abort, deadlineMillis, TimeUnit.MILLISECONDS);
+		try (CloseableHttpResponse response = httpClient.execute(get)) {
+			HttpEntity entity = response.getEntity();
+			int status = response.getStatusLine().getStatusCode();
+			if (status >= 400 || entity == null) {
+				EntityUtils.consumeQuietly(entity);
+				throw new IOException("Segment service returned HTTP " + status);
+			}
+			try (InputStream body = entity.getContent()) {
+				SegmentResponse segment = SEGMENT_READER.readValue(body);
+				// drain what is left so the connection goes back to the pool
+				EntityUtils.consume(entity);
+				return segment;
+			}
+		} finally {
+			deadline.cancel(false);
+		}
+	}
+
+	// Completes exceptionally on any failure, including the overall deadline.
+	public CompletableFuture<SegmentResponse> fetchAsync(int userId) {
+		CompletableFuture<SegmentResponse> result = new CompletableFuture<>();
+		HttpGet get = new HttpGet(url + "?user_id=" + userId);
+		get.setHeader("accept", "application/json");
+		Future<HttpResponse> call = asyncClient.execute(get, new FutureCallback<HttpResponse>() {
+			@Override
+			public void completed(HttpResponse response) {
+				try {
+					HttpEntity entity = response.getEntity();
+					int status = response.getStatusLine().getStatusCode();
+					if (status >= 400 || entity == null) {
+						throw new IOException("Segment service returned HTTP " + status);
+					}
+					try (InputStream body = entity.getContent()) {
+						result.complete(SEGMENT_READER.readValue(body));
+					}
+				} catch (Exception e) {
+					result.completeExceptionally(e);
+				}
+			}
+
+			@Override
+			public void failed(Exception e) {
+				result.completeExceptionally(e);
+			}
+
+			@Override
+			public void cancelled() {
+				result.completeExceptionally(new IOException("Segment call exceeded " + deadlineMillis + "ms deadline"));
+			}
+		});
+		ScheduledFuture<?> deadline = deadlineTimer.schedule(() -> call.cancel(true), deadlineMillis, TimeUnit.MILLISECONDS);
+		result.whenComplete((segment, error) -> deadline.cancel(false));
+		return result;
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		deadlineTimer.shutdownNow();
+		httpClient.close();
+		asyncClient.close();
+	}
+}
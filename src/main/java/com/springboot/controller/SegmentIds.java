@@ -0,0 +1,58 @@
+package com.springboot.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interns customer segment names into small int ids, one dictionary per
+ * {@link OfferStore}. Only stored offers add segments; a segment returned for a
+ * user that no offer mentions, or no segment at all, has no id and can
+ * therefore match nothing.
+ *
+ * Segment names come from clients, so a store holds at most
+ * {@link #MAX_SEGMENTS} of them and an offer bringing one more is rejected.
+ */
+final class SegmentIds {
+
+	public static final int UNKNOWN = -1;
+	static final int MAX_SEGMENTS = 65_536;
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+	private final AtomicInteger nextId = new AtomicInteger();
+	private final int maxSegments;
+
+	SegmentIds() {
+		this(MAX_SEGMENTS);
+	}
+
+	SegmentIds(int maxSegments) {
+		this.maxSegments = maxSegments;
+	}
+
+	int intern(String segment) {
+		Integer id = ids.get(segment);
+		if (id != null) {
+			return id;
+		}
+		if (ids.size() >= maxSegments) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"An offer store holds at most " + maxSegments + " distinct customer segments");
+		}
+		return ids.computeIfAbsent(segment, s -> nextId.getAndIncrement());
+	}
+
+	int lookup(String segment) {
+		if (segment == null) {
+			return UNKNOWN;
+		}
+		Integer id = ids.get(segment);
+		return id != null ? id : UNKNOWN;
+	}
+
+	int size() {
+		return ids.size();
+	}
+}
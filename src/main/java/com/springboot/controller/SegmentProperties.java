@@ -0,0 +1,79 @@
+package com.springboot.controller;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "segment")
+public class SegmentProperties {
+    private String url = "http://localhost:1080/api/v1/user_segment";
+
+    // threads used to resolve the distinct users of a batch apply_offer call; unused with execution.virtual-threads
+    private int batchParallelism = 32;
+
+    private Cache cache = new Cache();
+
+    private Client client = new Client();
+
+    private Table table = new Table();
+
+    private Breaker breaker = new Breaker();
+
+    private Limiter limiter = new Limiter();
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        private long maxSize = 100_000;
+        private Duration ttl = Duration.ofMinutes(1);
+        // failed lookups (TS_08, TS_25) are only remembered briefly so recovery is picked up quickly
+        private Duration negativeTtl = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Client {
+        private int maxConnections = 200;
+        private Duration connectTimeout = Duration.ofMillis(250);
+        private Duration readTimeout = Duration.ofMillis(500);
+        // upper bound for the whole call; past it the cart is priced without a segment
+        private Duration deadline = Duration.ofMillis(800);
+        private Duration keepAlive = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Table {
+        // user to segment snapshot written by SegmentTable.write; users in it are never looked up remotely
+        private String file;
+        // how often the file is checked for a new snapshot
+        private Duration pollInterval = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Breaker {
+        private boolean enabled = true;
+        // outcomes of this many recent calls decide whether the breaker opens
+        private int windowSize = 100;
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 0.5;
+        // while open, lookups skip the service and price the cart without a segment
+        private Duration openDuration = Duration.ofSeconds(5);
+        private int halfOpenProbes = 3;
+    }
+
+    @Data
+    public static class Limiter {
+        // off by default: every lookup it sheds prices the cart without a discount
+        private boolean enabled = false;
+        // 0 starts at segment.client.max-connections, so a cold cache is not shed before the pool is busy
+        private int initialLimit = 0;
+        private int minLimit = 2;
+        private int maxLimit = 200;
+        private double backoffRatio = 0.9;
+        // successful calls slower than this shrink the limit like failures do
+        private Duration latencyThreshold = Duration.ofMillis(300);
+    }
+}
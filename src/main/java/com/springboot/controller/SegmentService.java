@@ -0,0 +1,333 @@
+package com.springboot.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves a user's segment through the segment service, with a bounded
+ * in-process cache in front of it. Failed lookups are cached as the empty
+ * {@link SegmentResponse} the controller already treats as "no discount",
+ * but only for the shorter negative TTL. Concurrent misses for the same user
+ * share a single outbound call.
+ *
+ * When a {@link SegmentTable} snapshot is configured it is consulted first and
+ * only users missing from it go through the cache and the service.
+ *
+ * Calls to the service pass an {@link AdaptiveLimiter} on outstanding calls
+ * and a {@link CircuitBreaker}. A call either of them sheds is not made: the
+ * cart is priced with the empty segment straight away, and nothing is cached
+ * so the user is looked up again once the service recovers.
+ */
+@Component
+public class SegmentService implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(SegmentService.class);
+
+	private final SegmentProperties properties;
+	private final SegmentClient segmentClient;
+	private final SegmentTable segmentTable;
+	private final Cache<Integer, CachedSegment> cache;
+	private final LongAdder negativeHits = new LongAdder();
+	private final SingleFlight<Integer, CachedSegment> inFlight = new SingleFlight<>();
+	private final CircuitBreaker breaker;
+	private final AdaptiveLimiter limiter;
+	private final ExecutorService batchExecutor;
+	// false when the batch lookups share the virtual-thread executor, which is not ours to shut down
+	private final boolean ownsBatchExecutor;
+	private final Timer fetchSuccess;
+	private final Timer fetchFailure;
+
+	@Autowired
+	public SegmentService(SegmentProperties properties, SegmentClient segmentClient, SegmentTable segmentTable,
+			VirtualThreads virtualThreads, MeterRegistry registry) {
+		this.properties = properties;
+		this.segmentClient = segmentClient;
+		this.segmentTable = segmentTable;
+		final long ttlNanos = properties.getCache().getTtl().toNanos();
+		final long negativeTtlNanos = properties.getCache().getNegativeTtl().toNanos();
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(properties.getCache().getMaxSize())
+				.expireAfter(new Expiry<Integer, CachedSegment>() {
+					@Override
+					public long expireAfterCreate(Integer userId, CachedSegment value, long currentTime) {
+						return value.failed ? negativeTtlNanos : ttlNanos;
+					}
+
+					@Override
+					public long expireAfterUpdate(Integer userId, CachedSegment value, long currentTime, long currentDuration) {
+						return value.failed ? negativeTtlNanos : ttlNanos;
+					}
+
+					@Override
+					public long expireAfterRead(Integer userId, CachedSegment value, long currentTime, long currentDuration) {
+						return currentDuration;
+					}
+				})
+				.recordStats()
+				.build();
+		this.ownsBatchExecutor = !virtualThreads.isEnabled();
+		this.batchExecutor = !ownsBatchExecutor ? virtualThreads.executor()
+				: Executors.newFixedThreadPool(properties.getBatchParallelism(), runnable -> {
+					Thread thread = new Thread(runnable, "segment-batch");
+					thread.setDaemon(true);
+					return thread;
+				});
+
+		SegmentProperties.Breaker breakerProperties = properties.getBreaker();
+		this.breaker = !breakerProperties.isEnabled() ? CircuitBreaker.disabled()
+				: new CircuitBreaker(breakerProperties.getWindowSize(), breakerProperties.getMinimumCalls(),
+						breakerProperties.getFailureRateThreshold(), breakerProperties.getOpenDuration().toNanos(),
+						TimeUnit.NANOSECONDS, breakerProperties.getHalfOpenProbes());
+		SegmentProperties.Limiter limiterProperties = properties.getLimiter();
+		int initialLimit = limiterProperties.getInitialLimit() > 0 ? limiterProperties.getInitialLimit()
+				: Math.min(properties.getClient().getMaxConnections(), limiterProperties.getMaxLimit());
+		this.limiter = !limiterProperties.isEnabled() ? AdaptiveLimiter.unlimited()
+				: new AdaptiveLimiter(initialLimit, limiterProperties.getMinLimit(),
+						limiterProperties.getMaxLimit(), limiterProperties.getBackoffRatio(),
+						limiterProperties.getLatencyThreshold().toNanos(), TimeUnit.NANOSECONDS);
+
+		this.fetchSuccess = fetchTimer(registry, "success");
+		this.fetchFailure = fetchTimer(registry, "failure");
+		CaffeineCacheMetrics.monitor(registry, cache, "segment");
+		FunctionCounter.builder("segment.lookup.remote_calls", inFlight, SingleFlight::executions)
+				.description("Segment lookups that went out to the segment service")
+				.register(registry);
+		FunctionCounter.builder("segment.lookup.coalesced", inFlight, SingleFlight::coalesced)
+				.description("Segment lookups served by a call already in flight for the same user")
+				.register(registry);
+		Gauge.builder("segment.lookup.in_flight", inFlight, SingleFlight::inFlight)
+				.register(registry);
+		FunctionCounter.builder("segment.lookup.shed", breaker, CircuitBreaker::rejected)
+				.description("Segment lookups not made because the circuit breaker was open")
+				.tag("reason", "circuit_open")
+				.register(registry);
+		FunctionCounter.builder("segment.lookup.shed", limiter, AdaptiveLimiter::rejected)
+				.description("Segment lookups not made because the concurrency limit was reached")
+				.tag("reason", "concurrency_limit")
+				.register(registry);
+		Gauge.builder("segment.breaker.state", breaker, b -> b.state().ordinal())
+				.description("0 closed, 1 half-open, 2 open")
+				.register(registry);
+		Gauge.builder("segment.limiter.limit", limiter, AdaptiveLimiter::limit)
+				.register(registry);
+		if (segmentTable.isEnabled()) {
+			FunctionCounter.builder("segment.table.hits", segmentTable, SegmentTable::hits)
+					.description("Segment lookups answered from the local segment table")
+					.register(registry);
+			Gauge.builder("segment.table.users", segmentTable, SegmentTable::users)
+					.register(registry);
+		}
+	}
+
+	private static Timer fetchTimer(MeterRegistry registry, String outcome) {
+		return Timer.builder("segment.fetch")
+				.description("Calls to the segment service")
+				.tag("outcome", outcome)
+				.publishPercentileHistogram()
+				.register(registry);
+	}
+
+	public SegmentResponse getSegment(int userId) {
+		SegmentResponse local = segmentTable.lookup(userId);
+		if (local != null) {
+			return local;
+		}
+		CachedSegment cached = cached(userId);
+		return cached != null ? cached.response : load(userId);
+	}
+
+	// Non-blocking variant of getSegment for the async apply_offer pipeline.
+	public CompletableFuture<SegmentResponse> getSegmentAsync(int userId) {
+		SegmentResponse local = segmentTable.lookup(userId);
+		if (local != null) {
+			return CompletableFuture.completedFuture(local);
+		}
+		CachedSegment cached = cached(userId);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached.response);
+		}
+		return inFlight.executeAsync(userId, () -> {
+			long epoch = admit(userId);
+			if (epoch == CircuitBreaker.REJECTED) {
+				return CompletableFuture.completedFuture(CachedSegment.SHED);
+			}
+			long start = System.nanoTime();
+			CompletableFuture<SegmentResponse> call;
+			try {
+				call = segmentClient.fetchAsync(userId);
+			} catch (RuntimeException e) {
+				// a call that never started still gives back its limiter permit and any half-open probe
+				call = new CompletableFuture<>();
+				call.completeExceptionally(e);
+			}
+			return call
+					.handle((segment, error) -> {
+						completed(epoch, System.nanoTime() - start, error == null);
+						CachedSegment fetched = error == null ? new CachedSegment(segment, false) : failed(userId, error);
+						if (properties.getCache().isEnabled()) {
+							cache.put(userId, fetched);
+						}
+						return fetched;
+					});
+		}).thenApply(fetched -> fetched.response);
+	}
+
+	// Resolves each distinct user once; cache hits are answered inline and misses are fetched concurrently.
+	public Map<Integer, SegmentResponse> getSegments(Collection<Integer> userIds) {
+		Map<Integer, SegmentResponse> segments = new HashMap<>();
+		Map<Integer, CompletableFuture<SegmentResponse>> pending = new HashMap<>();
+		for (Integer userId : userIds) {
+			SegmentResponse local = segmentTable.lookup(userId);
+			if (local != null) {
+				segments.put(userId, local);
+				continue;
+			}
+			CachedSegment cached = cached(userId);
+			if (cached != null) {
+				segments.put(userId, cached.response);
+			} else {
+				pending.put(userId, CompletableFuture.supplyAsync(() -> load(userId), batchExecutor));
+			}
+		}
+		for (Map.Entry<Integer, CompletableFuture<SegmentResponse>> entry : pending.entrySet()) {
+			segments.put(entry.getKey(), entry.getValue().join());
+		}
+		return segments;
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	public SegmentStats stats() {
+		CacheStats stats = cache.stats();
+		SegmentCacheStats cacheStats = new SegmentCacheStats(cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+				negativeHits.sum(), stats.evictionCount(), stats.hitRate());
+		return new SegmentStats(cacheStats, inFlight.executions(), inFlight.coalesced(), inFlight.inFlight(),
+				segmentTable.users(), segmentTable.hits(), breaker.state().name(), breaker.rejected(), limiter.limit(),
+				limiter.rejected());
+	}
+
+	private CachedSegment cached(int userId) {
+		if (!properties.getCache().isEnabled()) {
+			return null;
+		}
+		CachedSegment cached = cache.getIfPresent(userId);
+		if (cached != null && cached.failed) {
+			negativeHits.increment();
+		}
+		return cached;
+	}
+
+	private SegmentResponse load(int userId) {
+		if (!properties.getCache().isEnabled()) {
+			return inFlight.execute(userId, () -> fetch(userId)).response;
+		}
+		// cache before the in-flight entry is dropped so late arrivals hit the cache instead of calling again
+		return inFlight.execute(userId, () -> {
+			CachedSegment fetched = fetch(userId);
+			if (fetched != CachedSegment.SHED) {
+				cache.put(userId, fetched);
+			}
+			return fetched;
+		}).response;
+	}
+
+	private CachedSegment fetch(int userId) {
+		long epoch = admit(userId);
+		if (epoch == CircuitBreaker.REJECTED) {
+			return CachedSegment.SHED;
+		}
+		long start = System.nanoTime();
+		try {
+			CachedSegment fetched = new CachedSegment(segmentClient.fetch(userId), false);
+			completed(epoch, System.nanoTime() - start, true);
+			return fetched;
+		} catch (Exception e) {
+			completed(epoch, System.nanoTime() - start, false);
+			return failed(userId, e);
+		}
+	}
+
+	// Returns the breaker epoch to report the call against, or REJECTED when the call is shed.
+	private long admit(int userId) {
+		if (!limiter.tryAcquire()) {
+			if (log.isDebugEnabled()) {
+				log.debug("segment_lookup_shed user_id={} reason=concurrency_limit", userId);
+			}
+			return CircuitBreaker.REJECTED;
+		}
+		long epoch = breaker.acquire();
+		if (epoch == CircuitBreaker.REJECTED) {
+			limiter.onIgnore();
+			if (log.isDebugEnabled()) {
+				log.debug("segment_lookup_shed user_id={} reason=circuit_open", userId);
+			}
+		}
+		return epoch;
+	}
+
+	// Sheds and failures are counted per call; only a change of breaker state is logged.
+	private void completed(long epoch, long elapsedNanos, boolean success) {
+		CircuitBreaker.State before = breaker.state();
+		breaker.record(epoch, success);
+		if (breaker.state() != before) {
+			log.warn("segment_breaker_state state={}", breaker.state());
+		}
+		if (success) {
+			limiter.onSuccess(elapsedNanos);
+			fetchSuccess.record(elapsedNanos, TimeUnit.NANOSECONDS);
+		} else {
+			limiter.onDropped();
+			fetchFailure.record(elapsedNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private static CachedSegment failed(int userId, Throwable error) {
+		if (log.isDebugEnabled()) {
+			log.debug("segment_lookup_failed user_id={} error={}", userId, error.getMessage());
+		}
+		return new CachedSegment(new SegmentResponse(), true); // Return empty if failed
+	}
+
+	@Override
+	public void destroy() {
+		if (ownsBatchExecutor) {
+			batchExecutor.shutdownNow();
+		}
+	}
+
+	static final class CachedSegment {
+		// a lookup that was shed rather than made; never cached
+		static final CachedSegment SHED = new CachedSegment(new SegmentResponse(), true);
+
+		final SegmentResponse response;
+		final boolean failed;
+
+		CachedSegment(SegmentResponse response, boolean failed) {
+			this.response = response;
+			this.failed = failed;
+		}
+	}
+}
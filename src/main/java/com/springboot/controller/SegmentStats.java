@@ -0,0 +1,26 @@
+package com.springboot.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SegmentStats {
+    private SegmentCacheStats cache;
+    // lookups that went out to the segment service
+    private long remote_calls;
+    // lookups that joined a call already in flight for the same user
+    private long coalesced_calls;
+    private int in_flight;
+    // users in the local segment table, and lookups it answered
+    private int table_users;
+    private long table_hits;
+    // CLOSED, HALF_OPEN or OPEN, and lookups skipped while it was not closed
+    private String breaker_state;
+    private long breaker_rejected;
+    // current adaptive limit on outstanding segment calls, and lookups shed by it
+    private int concurrency_limit;
+    private long limit_shed;
+}
@@ -0,0 +1,286 @@
+package com.springboot.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local user to segment table, loaded from a bulk snapshot file and consulted
+ * before the segment service. The file is memory-mapped rather than read onto
+ * the heap: user ids are a sorted int array searched in place and each user's
+ * segment is a one-byte code into a small dictionary, so tens of millions of
+ * users cost five bytes each of page cache and no garbage.
+ *
+ * The file is polled and a changed snapshot is mapped and swapped in
+ * atomically; lookups in progress finish against the table they started on.
+ * New snapshots must replace the file by rename, as {@link #write} does, since
+ * rewriting a mapped file in place changes the table under its readers.
+ * Users missing from the table fall through to the segment service.
+ *
+ * Layout (big-endian): magic, format version, segment count, user count; the
+ * segment names; padding to a 4-byte boundary; the sorted user ids; one code
+ * per user. Code {@value #NO_SEGMENT} means the user has no segment, which is
+ * answered with the same empty {@link SegmentResponse} the service would give.
+ */
+@Component
+public class SegmentTable implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(SegmentTable.class);
+
+	private static final int MAGIC = 0x53454754; // "SEGT"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER = 16;
+	static final int NO_SEGMENT = 0xFF;
+
+	private final Path file;
+	private final AtomicReference<Table> current = new AtomicReference<>(Table.EMPTY);
+	private final LongAdder hits = new LongAdder();
+	private final ScheduledExecutorService poller;
+	// identity of the loaded file: inode where the file system has one, plus modification time and size
+	private Object loadedKey;
+	private FileTime loadedModified;
+	private long loadedSize;
+
+	@Autowired
+	public SegmentTable(SegmentProperties properties) {
+		SegmentProperties.Table table = properties.getTable();
+		this.file = table.getFile() == null || table.getFile().isEmpty() ? null : Paths.get(table.getFile());
+		if (file == null) {
+			this.poller = null;
+			return;
+		}
+		reload();
+		long interval = table.getPollInterval().toMillis();
+		this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "segment-table-poller");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.poller.scheduleWithFixedDelay(this::reload, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	public boolean isEnabled() {
+		return file != null;
+	}
+
+	// Null when the user is not in the table and has to be looked up remotely.
+	public SegmentResponse lookup(int userId) {
+		SegmentResponse segment = current.get().lookup(userId);
+		if (segment != null) {
+			hits.increment();
+		}
+		return segment;
+	}
+
+	public int users() {
+		return current.get().users;
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	// Maps the file again if it changed since it was last loaded; a bad file keeps the previous table in use.
+	synchronized void reload() {
+		try {
+			if (!Files.exists(file)) {
+				return;
+			}
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			if (Objects.equals(attributes.fileKey(), loadedKey) && attributes.lastModifiedTime().equals(loadedModified)
+					&& attributes.size() == loadedSize) {
+				return;
+			}
+			long start = System.nanoTime();
+			Table table = Table.map(file);
+			current.set(table);
+			loadedKey = attributes.fileKey();
+			loadedModified = attributes.lastModifiedTime();
+			loadedSize = attributes.size();
+			log.info("segment_table_loaded file={} users={} segments={} elapsed_ms={}",
+					file, table.users, table.responses.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		} catch (IOException | RuntimeException e) {
+			log.warn("segment_table_load_failed file={} error={}", file, e.toString());
+		}
+	}
+
+	/**
+	 * Writes a snapshot file for the given users, replacing any existing file
+	 * atomically so a polling table never maps a half-written one. A null
+	 * segment stores the user as having no segment.
+	 */
+	public static void write(Path file, int[] userIds, String[] segments) throws IOException {
+		if (userIds.length != segments.length) {
+			throw new IllegalArgumentException("userIds and segments differ in length");
+		}
+		Map<String, Integer> codes = new HashMap<>();
+		List<String> dictionary = new ArrayList<>();
+		// user id in the high half and segment code in the low half, so one primitive sort orders both
+		long[] entries = new long[userIds.length];
+		for (int i = 0; i < userIds.length; i++) {
+			int code = NO_SEGMENT;
+			if (segments[i] != null) {
+				Integer known = codes.get(segments[i]);
+				if (known == null) {
+					if (dictionary.size() == NO_SEGMENT) {
+						throw new IllegalArgumentException("at most " + NO_SEGMENT + " distinct segments are supported");
+					}
+					known = dictionary.size();
+					codes.put(segments[i], known);
+					dictionary.add(segments[i]);
+				}
+				code = known;
+			}
+			entries[i] = ((long) userIds[i] << 32) | code;
+		}
+		Arrays.sort(entries);
+		for (int i = 1; i < entries.length; i++) {
+			if ((int) (entries[i] >> 32) == (int) (entries[i - 1] >> 32)) {
+				throw new IllegalArgumentException("user " + (int) (entries[i] >> 32) + " appears more than once");
+			}
+		}
+
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (OutputStream stream = Files.newOutputStream(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(dictionary.size());
+			out.writeInt(entries.length);
+			for (String segment : dictionary) {
+				byte[] bytes = segment.getBytes(StandardCharsets.UTF_8);
+				out.writeShort(bytes.length);
+				out.write(bytes);
+			}
+			while (out.size() % 4 != 0) {
+				out.writeByte(0);
+			}
+			for (long entry : entries) {
+				out.writeInt((int) (entry >> 32));
+			}
+			for (long entry : entries) {
+				out.writeByte((int) entry);
+			}
+			out.flush();
+		}
+		Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	@Override
+	public void destroy() {
+		if (poller != null) {
+			poller.shutdownNow();
+		}
+	}
+
+	static final class Table {
+		static final Table EMPTY = new Table(IntBuffer.allocate(0), ByteBuffer.allocate(0), new SegmentResponse[0]);
+
+		private final IntBuffer userIds;
+		private final ByteBuffer codes;
+		// one shared response per code, and the empty one at NO_SEGMENT
+		private final SegmentResponse[] responses;
+		private final SegmentResponse none = new SegmentResponse();
+		final int users;
+
+		private Table(IntBuffer userIds, ByteBuffer codes, SegmentResponse[] responses) {
+			this.userIds = userIds;
+			this.codes = codes;
+			this.responses = responses;
+			this.users = userIds.limit();
+		}
+
+		SegmentResponse lookup(int userId) {
+			int low = 0;
+			int high = users - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int id = userIds.get(mid);
+				if (id < userId) {
+					low = mid + 1;
+				} else if (id > userId) {
+					high = mid - 1;
+				} else {
+					int code = codes.get(mid) & 0xFF;
+					return code == NO_SEGMENT ? none : responses[code];
+				}
+			}
+			return null;
+		}
+
+		static Table map(Path file) throws IOException {
+			ByteBuffer buffer;
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				if (channel.size() > Integer.MAX_VALUE) {
+					throw new IOException(file + " is too large to map");
+				}
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			if (buffer.limit() < HEADER || buffer.getInt() != MAGIC) {
+				throw new IOException(file + " is not a segment table");
+			}
+			int format = buffer.getInt();
+			if (format != FORMAT_VERSION) {
+				throw new IOException(file + " has unsupported format version " + format);
+			}
+			int segmentCount = buffer.getInt();
+			int users = buffer.getInt();
+			if (segmentCount < 0 || segmentCount > NO_SEGMENT || users < 0) {
+				throw new IOException(file + " has a corrupt header");
+			}
+			SegmentResponse[] responses = new SegmentResponse[segmentCount];
+			for (int i = 0; i < segmentCount; i++) {
+				byte[] name = new byte[buffer.getShort() & 0xFFFF];
+				buffer.get(name);
+				responses[i] = new SegmentResponse(new String(name, StandardCharsets.UTF_8));
+			}
+			int idsOffset = (buffer.position() + 3) & ~3;
+			if ((long) idsOffset + 5L * users != buffer.limit()) {
+				throw new IOException(file + " is truncated or corrupt");
+			}
+			// through Buffer: ByteBuffer.position(int) and limit(int) only exist from Java 9, so a Java 8 runtime cannot link them
+			((Buffer) buffer).position(idsOffset).limit(idsOffset + 4 * users);
+			IntBuffer userIds = buffer.slice().asIntBuffer();
+			((Buffer) buffer).limit(buffer.capacity()).position(idsOffset + 4 * users);
+			ByteBuffer codes = buffer.slice();
+			for (int i = 0; i < users; i++) {
+				int code = codes.get(i) & 0xFF;
+				if (code != NO_SEGMENT && code >= segmentCount) {
+					throw new IOException(file + " has an unknown segment code " + code);
+				}
+			}
+			return new Table(userIds, codes, responses);
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package com.springboot.controller;
+
+/**
+ * Which of the offers matching a cart's restaurant and segment is applied.
+ */
+public enum SelectionPolicy {
+
+	// the offer added first for the segment, as the original findFirst() scan picked
+	FIRST_MATCH,
+	// the offer that leaves the lowest price for this cart value
+	BEST_DISCOUNT
+}
@@ -0,0 +1,81 @@
+package com.springboot.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which node prices a cart when cluster.routing is enabled: the owner
+ * of the cart's restaurant on a {@link ConsistentHashRing} of the configured
+ * nodes. Carts for one restaurant then always meet the same node's admission
+ * limits and caches. Every node holds every offer, so a node that cannot
+ * reach the owner still prices the cart correctly itself.
+ *
+ * Each other node has a {@link CircuitBreaker} over the carts routed to it, so
+ * while an owner is down its carts are priced locally at once instead of each
+ * one waiting out cluster.routing.timeout.
+ */
+@Component
+public class ShardRouter {
+
+	private static final Logger log = LoggerFactory.getLogger(ShardRouter.class);
+
+	private final ConsistentHashRing ring;
+	private final String selfUrl;
+	private final Map<String, CircuitBreaker> breakers;
+
+	@Autowired
+	public ShardRouter(ClusterProperties properties) {
+		ClusterProperties.Routing routing = properties.getRouting();
+		if (!routing.isEnabled()) {
+			this.ring = null;
+			this.selfUrl = null;
+			this.breakers = Collections.emptyMap();
+			return;
+		}
+		if (routing.getSelfUrl() == null || !routing.getNodes().contains(routing.getSelfUrl())) {
+			throw new IllegalStateException("cluster.routing.self-url must be one of cluster.routing.nodes");
+		}
+		this.ring = new ConsistentHashRing(routing.getNodes(), routing.getVirtualNodes());
+		this.selfUrl = routing.getSelfUrl();
+		ClusterProperties.Breaker breaker = routing.getBreaker();
+		this.breakers = new HashMap<>();
+		for (String node : routing.getNodes()) {
+			if (!node.equals(selfUrl)) {
+				breakers.put(node, new CircuitBreaker(breaker.getWindowSize(), breaker.getMinimumCalls(),
+						breaker.getFailureRateThreshold(), breaker.getOpenDuration().toNanos(), TimeUnit.NANOSECONDS,
+						breaker.getHalfOpenProbes()));
+			}
+		}
+		log.info("cart_routing_enabled self={} nodes={}", selfUrl, routing.getNodes().size());
+	}
+
+	// The base URL of the node to send the cart to, or null when this node prices it.
+	public String owner(int restaurantId) {
+		if (ring == null) {
+			return null;
+		}
+		String owner = ring.owner(restaurantId);
+		return owner.equals(selfUrl) ? null : owner;
+	}
+
+	// The breaker epoch to report the routed cart against, or REJECTED while the owner is skipped.
+	public long acquire(String owner) {
+		return breakers.get(owner).acquire();
+	}
+
+	public void record(String owner, long epoch, boolean success) {
+		CircuitBreaker breaker = breakers.get(owner);
+		CircuitBreaker.State before = breaker.state();
+		breaker.record(epoch, success);
+		if (breaker.state() != before) {
+			log.warn("cart_route_owner_state owner={} state={}", owner, breaker.state());
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.springboot.controller;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the loader
+ * and every caller that arrives while it is running gets the same result or
+ * the same exception instead of making its own call.
+ */
+public class SingleFlight<K, V> {
+
+	private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder executions = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+
+	public V execute(K key, Supplier<V> loader) {
+		CompletableFuture<V> call = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+		if (existing != null) {
+			coalesced.increment();
+			return await(existing);
+		}
+		executions.increment();
+		try {
+			V value = loader.get();
+			call.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			call.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, call);
+		}
+	}
+
+	// Same as execute, but the loader returns a future and nobody blocks while it is in flight.
+	public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> loader) {
+		CompletableFuture<V> call = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+		if (existing != null) {
+			coalesced.increment();
+			return existing;
+		}
+		executions.increment();
+		try {
+			loader.get().whenComplete((value, error) -> {
+				inFlight.remove(key, call);
+				if (error != null) {
+					call.completeExceptionally(error);
+				} else {
+					call.complete(value);
+				}
+			});
+		} catch (RuntimeException | Error e) {
+			inFlight.remove(key, call);
+			call.completeExceptionally(e);
+		}
+		return call;
+	}
+
+	// calls that actually ran the loader
+	public long executions() {
+		return executions.sum();
+	}
+
+	// calls that were served by another caller's in-flight execution
+	public long coalesced() {
+		return coalesced.sum();
+	}
+
+	public int inFlight() {
+		return inFlight.size();
+	}
+
+	private static <V> V await(CompletableFuture<V> call) {
+		try {
+			return call.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+}
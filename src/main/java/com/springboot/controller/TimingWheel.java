@@ -0,0 +1,129 @@
+package com.springboot.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: items scheduled for a deadline come back from
+ * {@link #advance(long)} once the clock passes it.
+ *
+ * Level 0 has one bucket per tick; each level above it has buckets as wide as
+ * the whole level below. Scheduling drops an item into the bucket of the
+ * lowest level whose range covers its deadline, and when a level-0 lap ends
+ * the next bucket up is cascaded down a level, so every item is touched once
+ * when scheduled, at most once per level on its way down and once when it is
+ * due, however many items there are. Deadlines are rounded up to a whole tick,
+ * so an item is never returned early and at most one tick late.
+ */
+final class TimingWheel<T> {
+
+	private final long tickMillis;
+	private final int wheelSize;
+	// span[level] is the width of one bucket of that level, in ticks
+	private final long[] span;
+	private final List<Entry<T>>[][] buckets;
+	private long currentTick;
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	TimingWheel(long tickMillis, int wheelSize, int levels, long nowMillis) {
+		this.tickMillis = Math.max(1, tickMillis);
+		this.wheelSize = wheelSize;
+		this.span = new long[levels + 1];
+		span[0] = 1;
+		for (int level = 1; level <= levels; level++) {
+			span[level] = span[level - 1] * wheelSize;
+		}
+		this.buckets = new List[levels][wheelSize];
+		this.currentTick = nowMillis / this.tickMillis;
+	}
+
+	synchronized void schedule(long deadlineMillis, T item) {
+		long deadlineTick = deadlineMillis / tickMillis + (deadlineMillis % tickMillis == 0 ? 0 : 1);
+		// a deadline already passed is returned by the next advance
+		place(new Entry<>(Math.max(deadlineTick, currentTick + 1), item));
+		size++;
+	}
+
+	// Moves the wheel up to nowMillis and returns the items that came due, earliest first.
+	synchronized List<T> advance(long nowMillis) {
+		long targetTick = nowMillis / tickMillis;
+		if (size == 0) {
+			currentTick = Math.max(currentTick, targetTick);
+			return Collections.emptyList();
+		}
+		List<T> due = new ArrayList<>();
+		while (currentTick < targetTick) {
+			currentTick++;
+			// higher levels first, so items they cascade into a lower bucket about to be cascaded go along
+			for (int level = buckets.length - 1; level > 0; level--) {
+				if (currentTick % span[level] == 0) {
+					List<Entry<T>> cascaded = take(level, currentTick);
+					if (cascaded != null) {
+						for (Entry<T> entry : cascaded) {
+							place(entry);
+						}
+					}
+				}
+			}
+			List<Entry<T>> fired = take(0, currentTick);
+			if (fired != null) {
+				for (Entry<T> entry : fired) {
+					due.add(entry.item);
+				}
+				size -= fired.size();
+				if (size == 0) {
+					currentTick = targetTick;
+				}
+			}
+		}
+		return due;
+	}
+
+	synchronized void clear() {
+		for (List<Entry<T>>[] level : buckets) {
+			Arrays.fill(level, null);
+		}
+		size = 0;
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	private void place(Entry<T> entry) {
+		long delta = entry.deadlineTick - currentTick;
+		int level = 0;
+		while (level < buckets.length - 1 && delta >= span[level + 1]) {
+			level++;
+		}
+		// beyond the top level's range: park in the bucket it cascades last, and it is placed again from there
+		long tick = delta >= span[buckets.length] ? currentTick : Math.max(entry.deadlineTick, currentTick);
+		int index = (int) ((tick / span[level]) % wheelSize);
+		List<Entry<T>> bucket = buckets[level][index];
+		if (bucket == null) {
+			bucket = new ArrayList<>(4);
+			buckets[level][index] = bucket;
+		}
+		bucket.add(entry);
+	}
+
+	private List<Entry<T>> take(int level, long tick) {
+		int index = (int) ((tick / span[level]) % wheelSize);
+		List<Entry<T>> bucket = buckets[level][index];
+		buckets[level][index] = null;
+		return bucket;
+	}
+
+	private static final class Entry<T> {
+		final long deadlineTick;
+		final T item;
+
+		Entry(long deadlineTick, T item) {
+			this.deadlineTick = deadlineTick;
+			this.item = item;
+		}
+	}
+}
@@ -1,8 +1,6 @@
 package com.springboot.controller;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -10,35 +8,54 @@ import java.net.URL;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class Utilities {
+
+	// Encoding of request and response bodies for the calling thread; JSON unless a test picks another
+	private static final ThreadLocal<WireFormat> FORMAT = ThreadLocal.withInitial(() -> WireFormat.JSON);
+
+	// Offer namespace for the calling thread's requests; null uses the server's default store
+	private static final ThreadLocal<String> NAMESPACE = new ThreadLocal<>();
+
+	public static void useFormat(WireFormat format) {
+		FORMAT.set(format);
+	}
+
+	public static void useNamespace(String namespace) {
+		NAMESPACE.set(namespace);
+	}
+
+	private static void setNamespace(HttpURLConnection con) {
+		if (NAMESPACE.get() != null) {
+			con.setRequestProperty(OfferStores.HEADER, NAMESPACE.get());
+		}
+	}
 	
 	public static boolean addOffer(OfferRequest offerRequest) throws Exception {
 		String urlString = "http://localhost:8080/api/v1/offer";
 		URL url = new URL(urlString);
 		HttpURLConnection con = (HttpURLConnection) url.openConnection();
 		con.setDoOutput(true);
-		con.setRequestProperty("Content-Type", "application/json");
+		WireFormat format = FORMAT.get();
+		con.setRequestProperty("Content-Type", format.contentType());
+		con.setRequestProperty("Accept", format.contentType());
+		setNamespace(con);
 
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = format.mapper();
 
-		String POST_PARAMS = mapper.writeValueAsString(offerRequest);
+		byte[] POST_PARAMS = mapper.writeValueAsBytes(offerRequest);
 		OutputStream os = con.getOutputStream();
-		os.write(POST_PARAMS.getBytes());
+		os.write(POST_PARAMS);
 		os.flush();
 		os.close();
 		int responseCode = con.getResponseCode();
 		System.out.println("POST Response Code :: " + responseCode);
 
 		if (responseCode == HttpURLConnection.HTTP_OK) { //success
-			BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-			String inputLine;
-			StringBuffer response = new StringBuffer();
-
-			while ((inputLine = in.readLine()) != null) {
-				response.append(inputLine);
+			ApiResponse response;
+			try (InputStream in = con.getInputStream()) {
+				response = mapper.readValue(in, ApiResponse.class);
 			}
-			in.close();
 			// print result
-			System.out.println(response.toString());
+			System.out.println(response.getResponse_msg());
 		} else {
 			System.out.println("POST request did not work.");
 		}
@@ -52,26 +69,28 @@ public class Utilities {
 	    HttpURLConnection con = (HttpURLConnection) url.openConnection();
 	    
 	    // 2. Setup the Request
+	    WireFormat format = FORMAT.get();
 	    con.setRequestMethod("POST");
-	    con.setRequestProperty("Content-Type", "application/json");
-	    con.setRequestProperty("Accept", "application/json");
+	    con.setRequestProperty("Content-Type", format.contentType());
+	    con.setRequestProperty("Accept", format.contentType());
+	    setNamespace(con);
 	    con.setDoOutput(true);
 
-	    // 3. Serialize the Java Object to JSON
-	    ObjectMapper mapper = new ObjectMapper();
-	    String jsonInputString = mapper.writeValueAsString(request);
+	    // 3. Serialize the Java Object with the shared mapper for the chosen format
+	    ObjectMapper mapper = format.mapper();
+	    byte[] input = mapper.writeValueAsBytes(request);
 
 	    // 4. Send the Request
 	    try (java.io.OutputStream os = con.getOutputStream()) {
-	        byte[] input = jsonInputString.getBytes("utf-8");
 	        os.write(input, 0, input.length);
 	    }
 
 	    // 5. Handle the Response
 	    if (con.getResponseCode() == 200) {
-	        InputStream responseStream = con.getInputStream();
-	        // Deserialize the JSON response back into a Java Object
-	        return mapper.readValue(responseStream, ApplyOfferResponse.class);
+	        try (InputStream responseStream = con.getInputStream()) {
+	            // Deserialize the response back into a Java Object
+	            return mapper.readValue(responseStream, ApplyOfferResponse.class);
+	        }
 	    } else {
 	        throw new RuntimeException("Failed to apply offer. HTTP error code: " + con.getResponseCode());
 	    }
@@ -85,6 +104,8 @@ public class Utilities {
 	    conn.setRequestMethod("POST");
 	    conn.setConnectTimeout(5000);
 	    conn.setReadTimeout(5000);
+	    // with a namespace only its offers are dropped
+	    setNamespace(conn);
 	    
 	    // 2. Enable output for POST
 	    conn.setDoOutput(true); 
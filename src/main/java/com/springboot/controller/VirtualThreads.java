@@ -0,0 +1,93 @@
+package com.springboot.controller;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in virtual-thread execution for the blocking apply_offer path.
+ *
+ * With {@code execution.virtual-threads=true} on a JDK that has virtual
+ * threads, Tomcat hands every request to a new virtual thread instead of a
+ * worker from its pool, and the segment lookups of a batch call run on virtual
+ * threads as well. A cart blocked on the segment service then costs a small
+ * heap-allocated stack rather than a platform thread, so in-flight carts are
+ * bounded by connections, admission control and the segment client's pool
+ * rather than {@code server.tomcat.max-threads}.
+ *
+ * The executor is looked up reflectively, so the code still builds for and
+ * runs on Java 8; where virtual threads are missing the setting is ignored with
+ * a warning. Nothing on the blocking path holds a monitor across I/O (the
+ * store, the segment client's connection pool and the single-flight table use
+ * java.util.concurrent locks), so a waiting request unmounts from its carrier.
+ */
+@Component
+public class VirtualThreads implements WebServerFactoryCustomizer<TomcatServletWebServerFactory>, DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+
+	private final ExecutorService executor;
+
+	@Autowired
+	public VirtualThreads(ExecutionProperties properties) {
+		this.executor = properties.isVirtualThreads() ? newVirtualThreadPerTaskExecutor() : null;
+	}
+
+	public boolean isEnabled() {
+		return executor != null;
+	}
+
+	// One new virtual thread per task, or null when the mode is off or the JDK lacks virtual threads.
+	public ExecutorService executor() {
+		return executor;
+	}
+
+	static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException e) {
+			log.warn("virtual_threads_unavailable java_version={}", System.getProperty("java.version"));
+		} catch (ReflectiveOperationException e) {
+			// JDK 19 and 20 only allow it with --enable-preview
+			log.warn("virtual_threads_unavailable java_version={} error={}", System.getProperty("java.version"),
+					String.valueOf(e.getCause()));
+		}
+		return null;
+	}
+
+	@Override
+	public void customize(TomcatServletWebServerFactory factory) {
+		if (executor == null) {
+			return;
+		}
+		factory.addConnectorCustomizers(this::useVirtualThreads);
+	}
+
+	private void useVirtualThreads(Connector connector) {
+		ProtocolHandler handler = connector.getProtocolHandler();
+		if (handler instanceof AbstractProtocol) {
+			// an executor set from outside replaces Tomcat's worker pool and is not shut down by Tomcat
+			((AbstractProtocol<?>) handler).setExecutor(executor);
+			log.info("virtual_threads_enabled connector={}", handler.getClass().getSimpleName());
+		} else {
+			log.warn("virtual_threads_not_applied connector={}", handler.getClass().getSimpleName());
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Encodings the API speaks, each with one shared, pre-configured Jackson
+ * mapper. Mappers are thread-safe once configured, so callers use these
+ * instances, or readers and writers made from them, instead of building a
+ * mapper per call. Unknown properties are ignored, as the server's JSON mapper
+ * does.
+ */
+public enum WireFormat {
+
+	JSON("application/json", new ObjectMapper()),
+	SMILE("application/x-jackson-smile", new ObjectMapper(new SmileFactory())),
+	CBOR("application/cbor", new ObjectMapper(new CBORFactory()));
+
+	private final String contentType;
+	private final ObjectMapper mapper;
+
+	WireFormat(String contentType, ObjectMapper mapper) {
+		this.contentType = contentType;
+		this.mapper = mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+	}
+
+	public String contentType() {
+		return contentType;
+	}
+
+	public ObjectMapper mapper() {
+		return mapper;
+	}
+
+	// The first of these formats an Accept header lists, or JSON when it lists none of them.
+	public static WireFormat forAccept(String accept) {
+		if (accept != null) {
+			for (String mediaType : accept.split(",")) {
+				int parameters = mediaType.indexOf(';');
+				String type = (parameters < 0 ? mediaType : mediaType.substring(0, parameters)).trim();
+				for (WireFormat format : values()) {
+					if (format.contentType.equalsIgnoreCase(type)) {
+						return format;
+					}
+				}
+			}
+		}
+		return JSON;
+	}
+}
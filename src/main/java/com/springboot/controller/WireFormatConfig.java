@@ -0,0 +1,28 @@
+package com.springboot.controller;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Lets clients send and receive Smile or CBOR instead of JSON, chosen by
+ * {@code Content-Type} and {@code Accept}. The binary converters go after
+ * JSON, so a request without an {@code Accept} header, or with a wildcard one,
+ * is still answered in JSON.
+ */
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		// Spring adds its own when the modules are on the classpath; these share the pre-built mappers instead
+		converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter
+				|| converter instanceof MappingJackson2CborHttpMessageConverter);
+		converters.add(new MappingJackson2SmileHttpMessageConverter(WireFormat.SMILE.mapper()));
+		converters.add(new MappingJackson2CborHttpMessageConverter(WireFormat.CBOR.mapper()));
+	}
+}
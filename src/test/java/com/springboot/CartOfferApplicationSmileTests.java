@@ -0,0 +1,15 @@
+package com.springboot;
+
+import com.springboot.controller.WireFormat;
+
+/**
+ * The functional suite again, with offers and carts sent and answered as Smile
+ * instead of JSON.
+ */
+public class CartOfferApplicationSmileTests extends CartOfferApplicationTests {
+
+    @Override
+    protected WireFormat wireFormat() {
+        return WireFormat.SMILE;
+    }
+}
@@ -4,12 +4,14 @@ import com.springboot.controller.ApplyOfferRequest;
 import com.springboot.controller.ApplyOfferResponse;
 import com.springboot.controller.OfferRequest;
 import com.springboot.controller.Utilities;
+import com.springboot.controller.WireFormat;
 
 import io.qameta.allure.Description;
 import io.qameta.allure.Severity;
 import io.qameta.allure.SeverityLevel;
 import io.qameta.allure.junit4.DisplayName;
 
+import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
@@ -25,7 +27,13 @@ import static org.mockserver.model.HttpResponse.response;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.UUID;
 
+/**
+ * Every test adds its offers in a namespace of its own and each user is mocked
+ * once for the class, so tests never share state and run in parallel (see the
+ * functional-tests execution in the pom).
+ */
 @RunWith(SpringRunner.class)
 @SpringBootTest
 public class CartOfferApplicationTests {
@@ -35,12 +43,7 @@ public class CartOfferApplicationTests {
     @BeforeClass
     public static void startMockServer() {
         mockServerClient = new MockServerClient("localhost", 1080);
-    }
-
-    @Before
-    public void setupMocksAndData() throws Exception {
         mockServerClient.reset();
-        Utilities.clearServerData();
 
         mockUser(1, "p1");  // User 1: Standard 'p1' segment for FlatX success, Rounding, and Large Values
         mockUser(2, "p2");  // User 2: Standard 'p2' segment for Percentage discount success
@@ -72,7 +75,25 @@ public class CartOfferApplicationTests {
         mockUser(26, "101"); // User 26: Numeric String Segment - Ensures strictly string-based comparison
     }
 
-    private void mockUser(int userId, String segment) {
+    // Body encoding the suite talks to the API in; subclasses rerun every scenario in another format
+    protected WireFormat wireFormat() {
+        return WireFormat.JSON;
+    }
+
+    @Before
+    public void setupMocksAndData() throws Exception {
+        Utilities.useFormat(wireFormat());
+        // a fresh namespace holds no offers, so nothing needs resetting first
+        Utilities.useNamespace(UUID.randomUUID().toString());
+    }
+
+    @After
+    public void dropData() throws Exception {
+        Utilities.clearServerData();
+        Utilities.useNamespace(null);
+    }
+
+    private static void mockUser(int userId, String segment) {
         mockServerClient
             .when(request().withMethod("GET").withPath("/api/v1/user_segment")
                 .withQueryStringParameter("user_id", String.valueOf(userId)))
@@ -81,7 +102,7 @@ public class CartOfferApplicationTests {
                 .withBody("{\"segment\": \"" + segment + "\"}"));
     }
 
-    private void mockUserError(int userId) {
+    private static void mockUserError(int userId) {
         mockServerClient
             .when(request().withMethod("GET").withPath("/api/v1/user_segment")
                 .withQueryStringParameter("user_id", String.valueOf(userId)))
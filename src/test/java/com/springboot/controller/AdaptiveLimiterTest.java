@@ -0,0 +1,49 @@
+package com.springboot.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveLimiterTest {
+
+    @Test
+    public void rejectsBeyondTheLimitAndAdaptsToOutcomes() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 8, 0.5, 100, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+        }
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(1, limiter.rejected());
+
+        // fast successes at full use grow the limit by about one per round trip
+        for (int i = 0; i < 4; i++) {
+            limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        Assert.assertEquals(4, limiter.limit());
+        for (int round = 0; round < 20; round++) {
+            int admitted = 0;
+            while (limiter.tryAcquire()) {
+                admitted++;
+            }
+            for (int i = 0; i < admitted; i++) {
+                limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(5));
+            }
+        }
+        Assert.assertEquals(8, limiter.limit());
+
+        // failures and slow calls back off multiplicatively, down to the minimum
+        Assert.assertTrue(limiter.tryAcquire());
+        limiter.onDropped();
+        Assert.assertEquals(4, limiter.limit());
+        Assert.assertTrue(limiter.tryAcquire());
+        limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(500));
+        Assert.assertEquals(2, limiter.limit());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.onDropped();
+        }
+        Assert.assertEquals(1, limiter.limit());
+        Assert.assertEquals(0, limiter.inFlight());
+    }
+}
@@ -0,0 +1,91 @@
+package com.springboot.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void checkoutQueueIsBoundedAndTimesOut() throws Exception {
+        AdmissionController admission = admission(2);
+        AdmissionController.Ticket first = admission.admit(AdmissionController.Priority.CHECKOUT);
+        AdmissionController.Ticket second = admission.admit(AdmissionController.Priority.CHECKOUT);
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(second);
+
+        // one waiter fits in the queue; the next is shed at once
+        CompletableFuture<AdmissionController.Ticket> waiting =
+                CompletableFuture.supplyAsync(() -> admission.admit(AdmissionController.Priority.CHECKOUT));
+        waitForQueued(admission);
+        long start = System.nanoTime();
+        Assert.assertNull(admission.admit(AdmissionController.Priority.CHECKOUT));
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+        // and the waiter gives up at its queue-time deadline
+        Assert.assertNull(waiting.get(5, TimeUnit.SECONDS));
+
+        first.close();
+        first.close();
+        AdmissionController.Ticket third = admission.admit(AdmissionController.Priority.CHECKOUT);
+        Assert.assertNotNull(third);
+        Assert.assertNull(admission.admit(AdmissionController.Priority.CHECKOUT));
+    }
+
+    @Test
+    public void ingestionYieldsToWaitingCheckout() throws Exception {
+        AdmissionController admission = admission(3);
+        AdmissionController.Ticket ingest = admission.admit(AdmissionController.Priority.INGESTION);
+        Assert.assertNotNull(ingest);
+        // ingestion holds at most its own share of the slots
+        Assert.assertNull(admission.admit(AdmissionController.Priority.INGESTION));
+
+        AdmissionController.Ticket first = admission.admit(AdmissionController.Priority.CHECKOUT);
+        AdmissionController.Ticket second = admission.admit(AdmissionController.Priority.CHECKOUT);
+        CompletableFuture<AdmissionController.Ticket> waiting =
+                CompletableFuture.supplyAsync(() -> admission.admit(AdmissionController.Priority.CHECKOUT));
+        waitForQueued(admission);
+        ingest.close();
+        // the slot ingestion gave back goes to the waiting cart, and new ingestion is refused meanwhile
+        AdmissionController.Ticket cart = waiting.get(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(cart);
+        Assert.assertNull(admission.admit(AdmissionController.Priority.INGESTION));
+        first.close();
+        second.close();
+        cart.close();
+        Assert.assertNotNull(admission.admit(AdmissionController.Priority.INGESTION));
+    }
+
+    @Test
+    public void hotRestaurantIsLimitedWithoutAffectingOthers() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.getRestaurant().setRatePerSecond(1);
+        properties.getRestaurant().setBurst(3);
+        AdmissionController admission = new AdmissionController(properties, new SimpleMeterRegistry());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(admission.allowRestaurant(1));
+        }
+        Assert.assertFalse(admission.allowRestaurant(1));
+        Assert.assertTrue(admission.allowRestaurant(2));
+    }
+
+    private static AdmissionController admission(int maxConcurrent) {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setMaxConcurrent(maxConcurrent);
+        properties.getCheckout().setMaxQueue(1);
+        properties.getCheckout().setQueueTimeout(Duration.ofMillis(200));
+        properties.getIngestion().setMaxConcurrent(1);
+        properties.getIngestion().setMaxQueue(0);
+        return new AdmissionController(properties, new SimpleMeterRegistry());
+    }
+
+    private static void waitForQueued(AdmissionController admission) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (admission.queued(AdmissionController.Priority.CHECKOUT) == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
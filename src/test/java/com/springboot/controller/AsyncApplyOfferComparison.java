@@ -0,0 +1,125 @@
+package com.springboot.controller;
+
+import com.springboot.CartOfferApplication;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the blocking and the async apply_offer endpoints with the same closed-loop
+ * load against a delayed local segment stub, with Tomcat held at a fixed thread count.
+ *
+ * Usage: AsyncApplyOfferComparison [clients=200] [tomcatThreads=20] [segmentLatencyMs=50] [seconds=10]
+ *
+ * On JDK 9+ run it with --add-opens java.base/java.lang=ALL-UNNAMED, as surefire does, or
+ * Spring's CGLIB proxies fail to load the application class.
+ */
+public class AsyncApplyOfferComparison {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int tomcatThreads = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 50;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        try (SegmentServiceStub stub = new SegmentServiceStub(0, latencyMillis, 0.0)) {
+            ConfigurableApplicationContext app = SpringApplication.run(CartOfferApplication.class,
+                    "--server.port=0",
+                    "--server.tomcat.max-threads=" + tomcatThreads,
+                    "--segment.url=" + stub.url(),
+                    "--segment.cache.enabled=false",
+                    "--admission.enabled=false",
+                    "--segment.client.max-connections=" + clients,
+                    "--segment.client.deadline=5s",
+                    "--segment.client.read-timeout=5s");
+            try {
+                app.getBean(OfferStore.class).add(new OfferRequest(1, "FLATX", 10, Arrays.asList("p1", "p2", "p3")));
+                String base = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+
+                System.out.printf("clients=%d tomcatThreads=%d segmentLatency=%dms duration=%ds%n",
+                        clients, tomcatThreads, latencyMillis, seconds);
+                for (String path : new String[] {"/api/v1/cart/apply_offer", "/api/v1/cart/apply_offer/async"}) {
+                    run(base + path, clients, 2);
+                    Result result = run(base + path, clients, seconds);
+                    System.out.printf("%-32s %8.0f req/s  mean %6.1f ms  errors %d%n",
+                            path, result.completed / (double) seconds, result.meanMillis(), result.errors);
+                }
+            } finally {
+                app.close();
+            }
+        }
+    }
+
+    private static Result run(String url, int clients, int seconds) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        AtomicInteger userIds = new AtomicInteger();
+        AtomicLong completed = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong totalNanos = new AtomicLong();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        try (CloseableHttpClient http = HttpClients.custom().setMaxConnTotal(clients).setMaxConnPerRoute(clients).build()) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                workers.add(pool.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        // distinct users so single-flight cannot coalesce the segment calls
+                        HttpPost post = new HttpPost(url);
+                        post.setEntity(new StringEntity("{\"cart_value\":200,\"restaurant_id\":1,\"user_id\":"
+                                + userIds.incrementAndGet() + "}", ContentType.APPLICATION_JSON));
+                        long start = System.nanoTime();
+                        try (CloseableHttpResponse response = http.execute(post)) {
+                            EntityUtils.consume(response.getEntity());
+                            if (response.getStatusLine().getStatusCode() == 200) {
+                                completed.incrementAndGet();
+                                totalNanos.addAndGet(System.nanoTime() - start);
+                            } else {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new Result(completed.get(), errors.get(), totalNanos.get());
+    }
+
+    private static final class Result {
+        final long completed;
+        final long errors;
+        final long totalNanos;
+
+        Result(long completed, long errors, long totalNanos) {
+            this.completed = completed;
+            this.errors = errors;
+            this.totalNanos = totalNanos;
+        }
+
+        double meanMillis() {
+            return completed == 0 ? 0 : totalNanos / (double) completed / 1_000_000;
+        }
+    }
+}
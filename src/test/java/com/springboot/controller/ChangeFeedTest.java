@@ -0,0 +1,110 @@
+package com.springboot.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ChangeFeedTest {
+
+    @Test
+    public void sequencesAreTheStoreVersionsTheChangesProduced() {
+        OfferStore store = new OfferStore();
+        store.add(offer(1, 10));
+        store.addAll(Arrays.asList(offer(2, 20), offer(3, 30)));
+        store.clear();
+        store.add(offer(4, 40));
+
+        OfferChanges changes = store.changesSince(0, 100);
+        Assert.assertFalse(changes.isSnapshot_required());
+        Assert.assertEquals(store.epoch(), changes.getEpoch());
+        Assert.assertEquals(store.snapshot().version(), changes.getLast_sequence());
+        Assert.assertEquals(4, changes.getChanges().size());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(i + 1, changes.getChanges().get(i).getSequence());
+        }
+        Assert.assertEquals(OfferChange.ADD, changes.getChanges().get(1).getType());
+        Assert.assertEquals(2, changes.getChanges().get(1).getOffers().size());
+        Assert.assertEquals(OfferChange.RESET, changes.getChanges().get(2).getType());
+
+        List<OfferChange> tail = store.changesSince(2, 1).getChanges();
+        Assert.assertEquals(1, tail.size());
+        Assert.assertEquals(3, tail.get(0).getSequence());
+        Assert.assertTrue(store.changesSince(4, 100).getChanges().isEmpty());
+        Assert.assertTrue(store.changesSince(5, 100).isSnapshot_required());
+    }
+
+    @Test
+    public void snapshotPlusTailRebuildsTheStore() {
+        OfferStore leader = new OfferStore();
+        for (int i = 0; i < 50; i++) {
+            leader.add(offer(i % 7, i + 1));
+        }
+        List<OfferRequest> snapshotOffers = offers(leader.snapshot());
+        long snapshotVersion = leader.snapshot().version();
+        leader.clear();
+        leader.addAll(Arrays.asList(offer(1, 5), offer(2, 6)));
+        leader.add(offer(1, 7));
+
+        OfferStore replica = new OfferStore();
+        replica.replace(snapshotOffers);
+        for (OfferChange change : leader.changesSince(snapshotVersion, 100).getChanges()) {
+            if (OfferChange.RESET.equals(change.getType())) {
+                replica.replace(change.getOffers() == null ? Collections.<OfferRequest>emptyList() : change.getOffers());
+            } else {
+                replica.addAll(change.getOffers());
+            }
+        }
+        for (int restaurantId = 0; restaurantId < 7; restaurantId++) {
+            Assert.assertEquals(requests(leader.snapshot().offers(restaurantId)), requests(replica.snapshot().offers(restaurantId)));
+        }
+        Assert.assertEquals(leader.size(), replica.size());
+        Assert.assertEquals(5, replica.find(1, "p1").getValue());
+    }
+
+    @Test
+    public void readersTooFarBehindStartOverFromASnapshot() throws Exception {
+        OfferStore store = new OfferStore(new OfferJournal(new OfferProperties()), Clock.systemUTC(), 100, 10);
+        for (int i = 0; i < 30; i++) {
+            store.add(offer(i, 1));
+        }
+        // ten single-offer changes are kept
+        Assert.assertTrue(store.changesSince(0, 100).isSnapshot_required());
+        Assert.assertTrue(store.changesSince(19, 100).isSnapshot_required());
+        OfferChanges tail = store.changesSince(20, 100);
+        Assert.assertFalse(tail.isSnapshot_required());
+        Assert.assertEquals(10, tail.getChanges().size());
+        Assert.assertEquals(30, tail.getChanges().get(9).getSequence());
+
+        // more offers in one change than are retained still leave the feed consistent
+        List<OfferRequest> bulk = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            bulk.add(offer(i, 2));
+        }
+        store.addAll(bulk);
+        Assert.assertTrue(store.changesSince(30, 100).isSnapshot_required());
+        Assert.assertTrue(store.changesSince(31, 100).getChanges().isEmpty());
+    }
+
+    private static OfferRequest offer(int restaurantId, int value) {
+        return new OfferRequest(restaurantId, "FLATX", value, Collections.singletonList("p1"));
+    }
+
+    private static List<OfferRequest> offers(OfferStore.Snapshot snapshot) {
+        List<OfferRequest> offers = new ArrayList<>();
+        snapshot.forEachRestaurant((restaurantId, restaurantOffers) -> offers.addAll(requests(restaurantOffers)));
+        return offers;
+    }
+
+    private static List<OfferRequest> requests(List<CompiledOffer> compiled) {
+        List<OfferRequest> offers = new ArrayList<>();
+        for (CompiledOffer offer : compiled) {
+            offers.add(offer.getOffer());
+        }
+        return offers;
+    }
+}
@@ -0,0 +1,65 @@
+package com.springboot.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensOnFailureRateAndClosesAfterSuccessfulProbes() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 50, TimeUnit.MILLISECONDS, 2);
+        for (int i = 0; i < 3; i++) {
+            breaker.record(breaker.acquire(), false);
+        }
+        // below the minimum number of calls nothing is decided yet
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        breaker.record(breaker.acquire(), true);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        breaker.record(breaker.acquire(), false);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        Assert.assertEquals(CircuitBreaker.REJECTED, breaker.acquire());
+        Assert.assertEquals(1, breaker.rejected());
+
+        Thread.sleep(60);
+        long first = breaker.acquire();
+        long second = breaker.acquire();
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        Assert.assertTrue(first != CircuitBreaker.REJECTED && second != CircuitBreaker.REJECTED);
+        // only the configured number of probes go through
+        Assert.assertEquals(CircuitBreaker.REJECTED, breaker.acquire());
+        breaker.record(first, true);
+        breaker.record(second, true);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void failedProbeReopensAndStaleOutcomesAreIgnored() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(4, 2, 0.5, 20, TimeUnit.MILLISECONDS, 1);
+        long slow = breaker.acquire();
+        breaker.record(breaker.acquire(), false);
+        breaker.record(breaker.acquire(), false);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        Thread.sleep(30);
+        long probe = breaker.acquire();
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        // a call admitted before the breaker opened must not count as the probe
+        breaker.record(slow, true);
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.record(probe, false);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        Assert.assertEquals(CircuitBreaker.REJECTED, breaker.acquire());
+    }
+
+    @Test
+    public void disabledBreakerNeverOpens() {
+        CircuitBreaker breaker = CircuitBreaker.disabled();
+        for (int i = 0; i < 1000; i++) {
+            breaker.record(breaker.acquire(), false);
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+}
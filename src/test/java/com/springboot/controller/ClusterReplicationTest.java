@@ -0,0 +1,190 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.CartOfferApplication;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A leader and two replicas on localhost ports, routing carts to each other by
+ * restaurant, against a local segment-service stub. User 3 is in segment p1.
+ */
+public class ClusterReplicationTest {
+
+    private static final ObjectMapper MAPPER = WireFormat.JSON.mapper();
+    private static final int NODES = 3;
+    private static final int LEADER = 0;
+    private static final int USER = 3;
+    private static final long EVENTUALLY_MILLIS = 5_000;
+
+    private static SegmentServiceStub segments;
+    private static CloseableHttpClient http;
+    private static final List<String> urls = new ArrayList<>();
+    private static final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    @BeforeClass
+    public static void startCluster() throws Exception {
+        segments = new SegmentServiceStub(0, 0, 0.0);
+        http = HttpClients.createDefault();
+        for (int i = 0; i < NODES; i++) {
+            urls.add("http://localhost:" + freePort());
+        }
+        for (int i = 0; i < NODES; i++) {
+            List<String> args = new ArrayList<>(Arrays.asList(
+                    "--cluster.routing.enabled=true",
+                    "--cluster.routing.self-url=" + urls.get(i),
+                    "--cluster.routing.nodes=" + String.join(",", urls)));
+            if (i != LEADER) {
+                args.add("--cluster.leader-url=" + urls.get(LEADER));
+            }
+            nodes.add(start(urls.get(i), args));
+        }
+    }
+
+    @AfterClass
+    public static void stopCluster() throws Exception {
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            nodes.get(i).close();
+        }
+        if (http != null) {
+            http.close();
+        }
+        if (segments != null) {
+            segments.close();
+        }
+    }
+
+    @Test
+    public void offersPostedToAReplicaArePricedOnEveryNode() throws Exception {
+        for (int restaurantId = 100; restaurantId < 112; restaurantId++) {
+            post(urls.get(1) + "/api/v1/offer", offer(restaurantId, 10));
+        }
+        for (int restaurantId = 100; restaurantId < 112; restaurantId++) {
+            // the replica written to, and the leader, see the offer as soon as the POST returns, wherever the cart is routed
+            Assert.assertEquals(90, price(urls.get(1), restaurantId));
+            Assert.assertEquals(90, price(urls.get(LEADER), restaurantId));
+            assertEventuallyPriced(urls.get(2), restaurantId, 90);
+        }
+    }
+
+    @Test
+    public void cartsAreRoutedToTheOwnerOfTheirRestaurant() throws Exception {
+        ShardRouter router = nodes.get(LEADER).getBean(ShardRouter.class);
+        int remote = 0;
+        for (int restaurantId = 200; restaurantId < 230; restaurantId++) {
+            post(urls.get(LEADER) + "/api/v1/offer", offer(restaurantId, 20));
+            if (router.owner(restaurantId) != null) {
+                remote++;
+            }
+        }
+        Assert.assertTrue(remote > 0 && remote < 30);
+
+        double before = routed(urls.get(LEADER));
+        for (int restaurantId = 200; restaurantId < 230; restaurantId++) {
+            Assert.assertEquals(80, price(urls.get(LEADER), restaurantId));
+        }
+        Assert.assertEquals(remote, routed(urls.get(LEADER)) - before, 0.0);
+    }
+
+    @Test
+    public void resetThroughAReplicaClearsEveryNode() throws Exception {
+        post(urls.get(LEADER) + "/api/v1/offer", offer(300, 30));
+        assertEventuallyPriced(urls.get(2), 300, 70);
+
+        post(urls.get(2) + "/api/v1/test/reset", Collections.emptyMap());
+        Assert.assertEquals(100, price(urls.get(2), 300));
+        Assert.assertEquals(100, price(urls.get(LEADER), 300));
+        assertEventuallyPriced(urls.get(1), 300, 100);
+    }
+
+    @Test
+    public void replicaStartedLaterLoadsTheLeadersSnapshot() throws Exception {
+        for (int restaurantId = 400; restaurantId < 405; restaurantId++) {
+            post(urls.get(LEADER) + "/api/v1/offer", offer(restaurantId, 40));
+        }
+        String url = "http://localhost:" + freePort();
+        try (ConfigurableApplicationContext late = start(url,
+                Collections.singletonList("--cluster.leader-url=" + urls.get(LEADER)))) {
+            for (int restaurantId = 400; restaurantId < 405; restaurantId++) {
+                assertEventuallyPriced(url, restaurantId, 60);
+            }
+            // and follows the change feed from there
+            post(urls.get(LEADER) + "/api/v1/offer", offer(405, 40));
+            assertEventuallyPriced(url, 405, 60);
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String url, List<String> clusterArgs) {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--server.port=" + url.substring(url.lastIndexOf(':') + 1),
+                "--segment.url=" + segments.url(),
+                "--offer.decision-log.sample-rate=0.0",
+                "--cluster.replica.poll-interval=50ms",
+                // several contexts share this JVM
+                "--spring.jmx.enabled=false"));
+        args.addAll(clusterArgs);
+        return SpringApplication.run(CartOfferApplication.class, args.toArray(new String[0]));
+    }
+
+    private static OfferRequest offer(int restaurantId, int value) {
+        return new OfferRequest(restaurantId, "FLATX", value, Collections.singletonList("p1"));
+    }
+
+    private static int price(String nodeUrl, int restaurantId) throws IOException {
+        JsonNode response = post(nodeUrl + "/api/v1/cart/apply_offer", new ApplyOfferRequest(100, restaurantId, USER));
+        return response.get("cart_value").asInt();
+    }
+
+    private static void assertEventuallyPriced(String nodeUrl, int restaurantId, int expected) throws Exception {
+        long deadline = System.currentTimeMillis() + EVENTUALLY_MILLIS;
+        int price = price(nodeUrl, restaurantId);
+        while (price != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            price = price(nodeUrl, restaurantId);
+        }
+        Assert.assertEquals(expected, price);
+    }
+
+    private static double routed(String nodeUrl) throws IOException {
+        try (CloseableHttpResponse response = http.execute(new HttpGet(nodeUrl + "/actuator/metrics/cart.apply_offer.routed"))) {
+            JsonNode metric = MAPPER.readTree(EntityUtils.toByteArray(response.getEntity()));
+            return metric.get("measurements").get(0).get("value").asDouble();
+        }
+    }
+
+    private static JsonNode post(String url, Object body) throws IOException {
+        HttpPost post = new HttpPost(url);
+        post.setEntity(new ByteArrayEntity(MAPPER.writeValueAsBytes(body), ContentType.APPLICATION_JSON));
+        try (CloseableHttpResponse response = http.execute(post)) {
+            Assert.assertEquals(url, 200, response.getStatusLine().getStatusCode());
+            byte[] content = response.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(response.getEntity());
+            return content.length == 0 ? null : MAPPER.readTree(content);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.springboot.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ConsistentHashRingTest {
+
+    private static final int RESTAURANTS = 100_000;
+
+    @Test
+    public void restaurantsSpreadEvenlyAcrossNodes() {
+        List<String> nodes = nodes(4);
+        ConsistentHashRing ring = new ConsistentHashRing(nodes, 128);
+        Map<String, Integer> owned = new HashMap<>();
+        for (int restaurantId = 0; restaurantId < RESTAURANTS; restaurantId++) {
+            owned.merge(ring.owner(restaurantId), 1, Integer::sum);
+        }
+        Assert.assertEquals(nodes.size(), owned.size());
+        for (int count : owned.values()) {
+            // within a fifth of a perfectly even share
+            Assert.assertTrue("owned " + count, Math.abs(count - RESTAURANTS / 4) < RESTAURANTS / 20);
+        }
+    }
+
+    @Test
+    public void addingANodeOnlyMovesRestaurantsToIt() {
+        ConsistentHashRing before = new ConsistentHashRing(nodes(4), 128);
+        ConsistentHashRing after = new ConsistentHashRing(nodes(5), 128);
+        String added = nodes(5).get(4);
+        int moved = 0;
+        for (int restaurantId = 0; restaurantId < RESTAURANTS; restaurantId++) {
+            String owner = after.owner(restaurantId);
+            if (!owner.equals(before.owner(restaurantId))) {
+                Assert.assertEquals(added, owner);
+                moved++;
+            }
+        }
+        // about a fifth of the restaurants, rather than most of them as with modulo hashing
+        Assert.assertTrue("moved " + moved, moved > RESTAURANTS / 8 && moved < RESTAURANTS * 3 / 10);
+    }
+
+    @Test
+    public void ownershipDoesNotDependOnNodeOrder() {
+        List<String> nodes = nodes(3);
+        ConsistentHashRing ring = new ConsistentHashRing(nodes, 64);
+        ConsistentHashRing reversed = new ConsistentHashRing(Arrays.asList(nodes.get(2), nodes.get(1), nodes.get(0)), 64);
+        for (int restaurantId = -1000; restaurantId < 1000; restaurantId++) {
+            Assert.assertEquals(ring.owner(restaurantId), reversed.owner(restaurantId));
+        }
+    }
+
+    private static List<String> nodes(int count) {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            nodes.add("http://localhost:" + (8080 + i));
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,195 @@
+package com.springboot.controller;
+
+import com.springboot.CartOfferApplication;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for /api/v1/cart/apply_offer, the standard capacity-planning run.
+ *
+ * Starts a local segment-service stub with the configured latency and error rate, starts the
+ * application in-process against it (or targets load.target when set), seeds offers through the
+ * bulk endpoint and then sends carts at a fixed rate over pooled connections. Latency is measured
+ * from each request's scheduled send time, so a stalled server shows up in the tail instead of
+ * silently lowering the offered load.
+ *
+ * ./mvnw -Ploadtest test-compile exec:java -Dload.rps=2000 -Dload.duration=60
+ *
+ * Settings (system properties): load.rps, load.duration and load.warmup in seconds,
+ * load.connections, load.restaurants, load.offersPerRestaurant, load.noOfferRatio, load.users,
+ * load.segmentLatencyMs, load.segmentErrorRate, load.path, load.target.
+ */
+public class LoadGenerator {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    public static void main(String[] args) throws Exception {
+        int rps = Integer.getInteger("load.rps", 1000);
+        int durationSeconds = Integer.getInteger("load.duration", 30);
+        int warmupSeconds = Integer.getInteger("load.warmup", 5);
+        int connections = Integer.getInteger("load.connections", 256);
+        int restaurants = Integer.getInteger("load.restaurants", 1000);
+        int offersPerRestaurant = Integer.getInteger("load.offersPerRestaurant", 2);
+        double noOfferRatio = Double.parseDouble(System.getProperty("load.noOfferRatio", "0.5"));
+        int users = Integer.getInteger("load.users", 100_000);
+        long segmentLatencyMs = Long.getLong("load.segmentLatencyMs", 20);
+        double segmentErrorRate = Double.parseDouble(System.getProperty("load.segmentErrorRate", "0.0"));
+        String path = System.getProperty("load.path", "/api/v1/cart/apply_offer");
+        String target = System.getProperty("load.target");
+
+        SegmentServiceStub stub = null;
+        ConfigurableApplicationContext app = null;
+        try {
+            String base = target;
+            if (base == null) {
+                stub = new SegmentServiceStub(0, segmentLatencyMs, segmentErrorRate);
+                app = SpringApplication.run(CartOfferApplication.class,
+                        "--server.port=0",
+                        "--segment.url=" + stub.url(),
+                        "--offer.decision-log.sample-rate=0.0");
+                base = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            }
+
+            try (CloseableHttpAsyncClient http = HttpAsyncClients.custom()
+                    .setMaxConnTotal(connections)
+                    .setMaxConnPerRoute(connections)
+                    .build()) {
+                http.start();
+                seedOffers(http, base, restaurants, offersPerRestaurant);
+
+                System.out.printf("target=%s%s rps=%d duration=%ds warmup=%ds connections=%d segmentLatency=%dms segmentErrors=%.3f%n",
+                        base, path, rps, durationSeconds, warmupSeconds, connections, segmentLatencyMs, segmentErrorRate);
+                int restaurantSpace = (int) Math.ceil(restaurants / Math.max(1.0 - noOfferRatio, 0.0001));
+                run(http, base + path, rps, warmupSeconds, restaurantSpace, users);
+                Result result = run(http, base + path, rps, durationSeconds, restaurantSpace, users);
+                result.print(durationSeconds);
+            }
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            if (stub != null) {
+                stub.close();
+            }
+        }
+    }
+
+    private static void seedOffers(CloseableHttpAsyncClient http, String base, int restaurants, int offersPerRestaurant)
+            throws Exception {
+        Random random = new Random(7);
+        StringBuilder body = new StringBuilder();
+        for (int restaurant = 1; restaurant <= restaurants; restaurant++) {
+            for (int i = 0; i < offersPerRestaurant; i++) {
+                String type = random.nextBoolean() ? "FLATX" : "FLAT_PERCENT";
+                body.append("{\"restaurant_id\":").append(restaurant)
+                        .append(",\"offer_type\":\"").append(type)
+                        .append("\",\"offer_value\":").append(1 + random.nextInt(30))
+                        .append(",\"customer_segment\":[\"p").append(1 + (restaurant + i) % 3).append("\"]}\n");
+            }
+        }
+        HttpPost post = new HttpPost(base + "/api/v1/offer/bulk");
+        post.setEntity(new ByteArrayEntity(body.toString().getBytes(StandardCharsets.UTF_8),
+                ContentType.create("application/x-ndjson")));
+        HttpResponse response = http.execute(post, null).get(2, TimeUnit.MINUTES);
+        System.out.println("seeded offers: " + EntityUtils.toString(response.getEntity()));
+    }
+
+    private static Result run(CloseableHttpAsyncClient http, String url, int rps, int seconds,
+                              int restaurantSpace, int users) throws InterruptedException {
+        Result result = new Result();
+        long total = (long) rps * seconds;
+        CountDownLatch outstanding = new CountDownLatch((int) Math.min(total, Integer.MAX_VALUE));
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rps;
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long intendedStart = start + i * intervalNanos;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            byte[] cart = ("{\"cart_value\":" + (100 + random.nextInt(900))
+                    + ",\"restaurant_id\":" + (1 + random.nextInt(restaurantSpace))
+                    + ",\"user_id\":" + (1 + random.nextInt(users)) + "}").getBytes(StandardCharsets.UTF_8);
+            HttpPost post = new HttpPost(url);
+            post.setEntity(new ByteArrayEntity(cart, ContentType.APPLICATION_JSON));
+            result.sent.incrementAndGet();
+            http.execute(post, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    try {
+                        EntityUtils.consume(response.getEntity());
+                    } catch (IOException ignored) {
+                        // the status code is all that matters here
+                    }
+                    if (response.getStatusLine().getStatusCode() == 200) {
+                        result.record(intendedStart);
+                    } else {
+                        result.errors.incrementAndGet();
+                    }
+                    outstanding.countDown();
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    result.errors.incrementAndGet();
+                    outstanding.countDown();
+                }
+
+                @Override
+                public void cancelled() {
+                    result.errors.incrementAndGet();
+                    outstanding.countDown();
+                }
+            });
+        }
+        if (!outstanding.await(30, TimeUnit.SECONDS)) {
+            System.out.println("warning: " + outstanding.getCount() + " requests still outstanding");
+        }
+        return result;
+    }
+
+    private static final class Result {
+        final Histogram latency = new ConcurrentHistogram(MAX_LATENCY_NANOS, 3);
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        void record(long intendedStart) {
+            latency.recordValue(Math.min(System.nanoTime() - intendedStart, MAX_LATENCY_NANOS));
+        }
+
+        void print(int seconds) {
+            System.out.printf("sent=%d ok=%d errors=%d throughput=%.0f req/s%n",
+                    sent.get(), latency.getTotalCount(), errors.get(), latency.getTotalCount() / (double) seconds);
+            System.out.printf("latency ms  p50=%.2f p90=%.2f p99=%.2f p999=%.2f max=%.2f%n",
+                    millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)),
+                    millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)),
+                    millis(latency.getMaxValue()));
+            System.out.println("latency distribution (ms):");
+            latency.outputPercentileDistribution(System.out, 5, 1_000_000.0);
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.springboot.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class OfferJournalTest {
+
+    private static final int RESTAURANTS = 20;
+
+    @Test
+    public void restartRestoresOffersInInsertionOrderAcrossRollsAndResets() throws Exception {
+        Path dir = Files.createTempDirectory("offer-journal");
+        try {
+            // small journal files so the run rolls over and compacts several times
+            OfferJournal journal = journal(dir, 4096);
+            OfferStore store = new OfferStore(journal, new OfferProperties());
+            for (int i = 0; i < 500; i++) {
+                store.add(offer(i % RESTAURANTS, i));
+            }
+            store.clear();
+            List<OfferRequest> chunk = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) {
+                chunk.add(offer(i % RESTAURANTS, i));
+                if (chunk.size() == 100) {
+                    store.addAll(chunk);
+                    chunk.clear();
+                }
+            }
+            for (int i = 3000; i < 3100; i++) {
+                store.add(offer(i % RESTAURANTS, i));
+            }
+            journal.destroy();
+
+            OfferStore restored = new OfferStore(journal(dir, 4096), new OfferProperties());
+            assertSameOffers(store.snapshot(), restored.snapshot());
+            Assert.assertEquals(3100, restored.size());
+            Assert.assertEquals(store.snapshot().version(), restored.snapshot().version());
+            Assert.assertTrue(Files.exists(dir.resolve("offers.snapshot")));
+
+            // the restored store keeps journaling where the previous one stopped
+            restored.add(offer(1, 9999));
+            OfferStore again = new OfferStore(journal(dir, 4096), new OfferProperties());
+            assertSameOffers(restored.snapshot(), again.snapshot());
+            Assert.assertEquals(restored.snapshot().version(), again.snapshot().version());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void tornRecordEndsReplayAtTheLastIntactRecord() throws Exception {
+        Path dir = Files.createTempDirectory("offer-journal");
+        try {
+            OfferJournal journal = journal(dir, 1 << 20);
+            OfferStore store = new OfferStore(journal, new OfferProperties());
+            for (int i = 0; i < 3; i++) {
+                store.add(offer(7, i));
+            }
+            journal.destroy();
+
+            Path file = journalFiles(dir).get(0);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                int position = 16;
+                int last = position;
+                while (buffer.getInt(position) != 0) {
+                    last = position;
+                    position += 8 + buffer.getInt(position);
+                }
+                // flip a byte in the last record's body, as a crash mid-write would leave it
+                buffer.put(last + 9, (byte) (buffer.get(last + 9) ^ 0x5A));
+            }
+
+            OfferStore restored = new OfferStore(journal(dir, 1 << 20), new OfferProperties());
+            Assert.assertEquals(2, restored.size());
+            restored.add(offer(7, 42));
+            OfferStore again = new OfferStore(journal(dir, 1 << 20), new OfferProperties());
+            List<CompiledOffer> offers = again.snapshot().offers(7);
+            Assert.assertEquals(3, offers.size());
+            Assert.assertEquals(43, offers.get(2).getValue());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static OfferJournal journal(Path dir, long segmentSize) {
+        OfferProperties properties = new OfferProperties();
+        properties.getJournal().setDir(dir.toString());
+        properties.getJournal().setSegmentSize(segmentSize);
+        return new OfferJournal(properties);
+    }
+
+    private static OfferRequest offer(int restaurant, int value) {
+        return new OfferRequest(restaurant, value % 2 == 0 ? "FLATX" : "FLAT_PERCENT", value + 1,
+                Arrays.asList("p" + (value % 3 + 1), "p" + ((value + 1) % 3 + 1)));
+    }
+
+    private static void assertSameOffers(OfferStore.Snapshot expected, OfferStore.Snapshot actual) {
+        for (int restaurant = 0; restaurant < RESTAURANTS; restaurant++) {
+            List<CompiledOffer> expectedOffers = expected.offers(restaurant);
+            List<CompiledOffer> actualOffers = actual.offers(restaurant);
+            Assert.assertEquals("offers of restaurant " + restaurant, expectedOffers.size(), actualOffers.size());
+            for (int i = 0; i < expectedOffers.size(); i++) {
+                Assert.assertEquals(expectedOffers.get(i).getOffer(), actualOffers.get(i).getOffer());
+            }
+            for (String segment : new String[] {"p1", "p2", "p3"}) {
+                CompiledOffer expectedMatch = expected.find(restaurant, segment);
+                CompiledOffer actualMatch = actual.find(restaurant, segment);
+                Assert.assertEquals(expectedMatch == null ? null : expectedMatch.getOffer(),
+                        actualMatch == null ? null : actualMatch.getOffer());
+            }
+        }
+    }
+
+    private static List<Path> journalFiles(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "journal-*.log")) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
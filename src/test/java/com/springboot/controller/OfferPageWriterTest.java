@@ -0,0 +1,113 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class OfferPageWriterTest {
+
+    private static final ObjectWriter OFFER_WRITER = OfferPageWriter.offerWriter(WireFormat.JSON);
+
+    @Test
+    public void pagesListEveryOfferOnceInRestaurantOrder() throws IOException {
+        OfferStore store = new OfferStore();
+        List<OfferRequest> expected = new ArrayList<>();
+        for (int restaurantId = 50; restaurantId > 0; restaurantId -= 7) {
+            store.add(offer(restaurantId, 1));
+            store.add(offer(restaurantId, 2));
+            store.add(offer(restaurantId, 3));
+        }
+        for (int restaurantId = 1; restaurantId <= 50; restaurantId += 7) {
+            expected.add(offer(restaurantId, 1));
+            expected.add(offer(restaurantId, 2));
+            expected.add(offer(restaurantId, 3));
+        }
+
+        List<OfferRequest> listed = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            OfferPage page = page(store, null, cursor, 4);
+            Assert.assertEquals(store.epoch(), page.getEpoch());
+            Assert.assertEquals(store.snapshot().version(), page.getVersion());
+            Assert.assertTrue(page.getOffers().size() <= 4);
+            listed.addAll(page.getOffers());
+            cursor = page.getNext_cursor();
+            pages++;
+        } while (cursor != null);
+        Assert.assertEquals(expected, listed);
+        Assert.assertEquals(6, pages);
+
+        OfferPage single = page(store, 15, null, 2);
+        Assert.assertEquals(2, single.getOffers().size());
+        Assert.assertEquals(offer(15, 3), page(store, 15, single.getNext_cursor(), 2).getOffers().get(0));
+        Assert.assertTrue(page(store, 16, null, 2).getOffers().isEmpty());
+    }
+
+    @Test
+    public void aCursorPastAnEmptiedRestaurantContinuesAtTheNextOne() throws IOException {
+        OfferStore store = new OfferStore();
+        store.add(offer(2, 1));
+        store.add(offer(3, 1));
+        Assert.assertEquals(offer(3, 1), page(store, null, "2:1", 10).getOffers().get(0));
+        Assert.assertEquals(offer(3, 1), page(store, null, "1:5", 10).getOffers().get(1));
+        Assert.assertTrue(page(store, null, "9:0", 10).getOffers().isEmpty());
+        try {
+            page(store, null, "nope", 10);
+            Assert.fail("a malformed cursor was accepted");
+        } catch (ResponseStatusException expectedFailure) {
+            // 400 to the client
+        }
+    }
+
+    @Test
+    public void snapshotsStreamEveryOfferAtTheStoreVersion() throws IOException {
+        OfferStore store = new OfferStore();
+        store.add(offer(2, 1));
+        store.add(offer(1, 1));
+        store.add(offer(2, 2));
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonGenerator out = WireFormat.SMILE.mapper().getFactory().createGenerator(body)) {
+            OfferPageWriter.writeSnapshot(out, OfferPageWriter.offerWriter(WireFormat.SMILE), store.epoch(), store.snapshot());
+        }
+        ReplicationSnapshot snapshot = WireFormat.SMILE.mapper().readValue(body.toByteArray(), ReplicationSnapshot.class);
+        Assert.assertEquals(store.epoch(), snapshot.getEpoch());
+        Assert.assertEquals(3, snapshot.getSequence());
+        Assert.assertEquals(Arrays.asList(offer(1, 1), offer(2, 1), offer(2, 2)), snapshot.getOffers());
+    }
+
+    @Test
+    public void entityTagsMatchTheCurrentVersionOnly() {
+        String etag = OfferReadController.etag(7, 42, WireFormat.JSON);
+        Assert.assertEquals("\"7.42.json\"", etag);
+        Assert.assertTrue(OfferReadController.matches(etag, etag));
+        Assert.assertTrue(OfferReadController.matches("\"7.41.json\", W/" + etag, etag));
+        Assert.assertTrue(OfferReadController.matches("*", etag));
+        Assert.assertFalse(OfferReadController.matches("\"7.41.json\"", etag));
+        Assert.assertFalse(OfferReadController.matches("\"8.42.json\"", etag));
+        Assert.assertFalse(OfferReadController.matches(OfferReadController.etag(7, 42, WireFormat.SMILE), etag));
+        Assert.assertFalse(OfferReadController.matches(null, etag));
+    }
+
+    private static OfferPage page(OfferStore store, Integer restaurantId, String cursor, int limit) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonGenerator out = WireFormat.JSON.mapper().getFactory().createGenerator(body)) {
+            OfferPageWriter.write(out, OFFER_WRITER, store.epoch(), store.snapshot(), restaurantId, cursor, limit);
+        }
+        return WireFormat.JSON.mapper().readValue(body.toByteArray(), OfferPage.class);
+    }
+
+    private static OfferRequest offer(int restaurantId, int value) {
+        return new OfferRequest(restaurantId, "FLATX", value, Collections.singletonList("p1"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.springboot.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class OfferSelectionTest {
+
+    @Test
+    public void firstMatchKeepsTheOfferAddedFirst() {
+        OfferStore store = new OfferStore();
+        store.add(new OfferRequest(1, "FLATX", 5, Collections.singletonList("p1")));
+        store.add(new OfferRequest(1, "FLATX", 50, Collections.singletonList("p1")));
+
+        CompiledOffer offer = store.select(1, "p1", 200, SelectionPolicy.FIRST_MATCH);
+        Assert.assertEquals(5, offer.getValue());
+        Assert.assertSame(store.find(1, "p1"), offer);
+    }
+
+    @Test
+    public void bestDiscountDependsOnCartValue() {
+        OfferStore store = new OfferStore();
+        store.add(new OfferRequest(1, "BOGO", 10, Collections.singletonList("p1")));
+        store.add(new OfferRequest(1, "FLATX", 20, Arrays.asList("p1", "p2")));
+        store.add(new OfferRequest(1, "FLATX", 30, Collections.singletonList("p1")));
+        store.add(new OfferRequest(1, "FLAT_PERCENT", 10, Collections.singletonList("p1")));
+
+        // 10% of 100 is less than 30 off, 10% of 1000 is more
+        Assert.assertEquals(70, store.select(1, "p1", 100, SelectionPolicy.BEST_DISCOUNT).apply(100));
+        Assert.assertEquals(900, store.select(1, "p1", 1000, SelectionPolicy.BEST_DISCOUNT).apply(1000));
+        Assert.assertEquals(20, store.select(1, "p2", 1000, SelectionPolicy.BEST_DISCOUNT).getValue());
+        Assert.assertNull(store.select(1, "p3", 1000, SelectionPolicy.BEST_DISCOUNT));
+        Assert.assertNull(store.select(2, "p1", 1000, SelectionPolicy.BEST_DISCOUNT));
+    }
+
+    @Test
+    public void bestDiscountKeepsTheFirstMatchOnATie() {
+        OfferStore store = new OfferStore();
+        store.add(new OfferRequest(1, "FLAT_PERCENT", 10, Collections.singletonList("p1")));
+        store.add(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1")));
+        store.add(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1")));
+
+        CompiledOffer first = store.find(1, "p1");
+        Assert.assertSame(first, store.select(1, "p1", 100, SelectionPolicy.BEST_DISCOUNT));
+    }
+
+    @Test
+    public void aFailedSegmentLookupNeverMatchesANullSegment() {
+        OfferStore store = new OfferStore();
+        store.add(new OfferRequest(1, "FLATX", 10, Arrays.asList(null, "p1")));
+        store.add(new OfferRequest(2, "FLATX", 10, Collections.<String>singletonList(null)));
+
+        Assert.assertNull(store.select(1, null, 100, SelectionPolicy.FIRST_MATCH));
+        Assert.assertNull(store.select(1, null, 100, SelectionPolicy.BEST_DISCOUNT));
+        Assert.assertEquals(10, store.find(1, "p1").getValue());
+        Assert.assertNull(store.find(2, null));
+        Assert.assertFalse(store.hasCandidates(2));
+    }
+
+    @Test
+    public void segmentDictionariesAreBounded() {
+        SegmentIds ids = new SegmentIds(2);
+        CompiledOffer.compile(new OfferRequest(1, "FLATX", 10, Arrays.asList("p1", "p2")), ids);
+        CompiledOffer.compile(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1")), ids);
+        try {
+            CompiledOffer.compile(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p3")), ids);
+            Assert.fail("a segment past the limit was interned");
+        } catch (ResponseStatusException expected) {
+            Assert.assertEquals(2, ids.size());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.springboot.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OfferStoreConcurrencyTest {
+
+    private static final int WRITERS = 8;
+    private static final int READERS = 8;
+    private static final int OFFERS_PER_WRITER = 5000;
+
+    @Test
+    public void concurrentWritesAreNotLostAndReadsNeverFail() throws Exception {
+        OfferStore store = new OfferStore();
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            writers.add(pool.submit(() -> {
+                start.await();
+                // each writer owns one restaurant so per-restaurant insertion order can be checked
+                for (int i = 0; i < OFFERS_PER_WRITER; i += 10) {
+                    List<OfferRequest> chunk = new ArrayList<>();
+                    for (int j = i; j < i + 10; j++) {
+                        chunk.add(offer(writer, j));
+                    }
+                    if ((i / 10) % 2 == 0) {
+                        store.addAll(chunk);
+                    } else {
+                        chunk.forEach(store::add);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(pool.submit(() -> {
+                start.await();
+                int lastSize = 0;
+                while (writing.get()) {
+                    int restaurant = ThreadLocalRandom.current().nextInt(WRITERS);
+                    CompiledOffer first = store.find(restaurant, "p1");
+                    if (first != null) {
+                        Assert.assertEquals(0, first.getValue());
+                    }
+                    int size = store.size();
+                    Assert.assertTrue("snapshot size went backwards", size >= lastSize);
+                    lastSize = size;
+                    reads.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        Assert.assertEquals(WRITERS * OFFERS_PER_WRITER, store.size());
+        Assert.assertTrue(reads.get() > 0);
+        for (int w = 0; w < WRITERS; w++) {
+            List<CompiledOffer> offers = store.snapshot().offers(w);
+            Assert.assertEquals(OFFERS_PER_WRITER, offers.size());
+            for (int i = 0; i < OFFERS_PER_WRITER; i++) {
+                Assert.assertEquals(i, offers.get(i).getValue());
+            }
+            Assert.assertEquals(0, store.find(w, "p1").getValue());
+        }
+    }
+
+    @Test
+    public void resetIsAppliedInOrderWithAdds() throws Exception {
+        OfferStore store = new OfferStore();
+        store.add(offer(1, 10));
+        store.clear();
+        store.add(offer(1, 20));
+        Assert.assertEquals(1, store.size());
+        Assert.assertEquals(20, store.find(1, "p1").getValue());
+        Assert.assertNull(store.find(1, "p3"));
+    }
+
+    private static OfferRequest offer(int restaurantId, int value) {
+        return new OfferRequest(restaurantId, "FLATX", value, Arrays.asList("p1", "p2"));
+    }
+}
@@ -0,0 +1,126 @@
+package com.springboot.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Collections;
+
+public class OfferStoresTest {
+
+    @Test
+    public void namespacesDoNotSeeEachOthersOffers() {
+        OfferStore defaultStore = new OfferStore();
+        OfferStores stores = new OfferStores(defaultStore, new OfferProperties());
+        try {
+            stores.write(null).add(offer(1, 10));
+            stores.write("a").add(offer(1, 20));
+            stores.write("b").add(offer(2, 30));
+
+            Assert.assertSame(defaultStore, stores.read(null));
+            Assert.assertEquals(10, stores.read(null).find(1, "p1").getValue());
+            Assert.assertEquals(20, stores.read("a").find(1, "p1").getValue());
+            Assert.assertNull(stores.read("a").find(2, "p1"));
+            Assert.assertNull(stores.read("b").find(1, "p1"));
+            Assert.assertEquals(1, defaultStore.size());
+        } finally {
+            stores.destroy();
+        }
+    }
+
+    @Test
+    public void droppingANamespaceLeavesTheOthers() {
+        OfferStores stores = new OfferStores(new OfferStore(), new OfferProperties());
+        try {
+            stores.write(null).add(offer(1, 10));
+            stores.write("a").add(offer(1, 20));
+            stores.write("b").add(offer(1, 30));
+
+            Assert.assertTrue(stores.drop("a"));
+            Assert.assertFalse(stores.drop("a"));
+            Assert.assertFalse(stores.read("a").hasCandidates(1));
+            Assert.assertEquals(30, stores.read("b").find(1, "p1").getValue());
+            Assert.assertEquals(10, stores.read(null).find(1, "p1").getValue());
+
+            // reading a namespace does not create it
+            Assert.assertFalse(stores.read("c").hasCandidates(1));
+            Assert.assertEquals(1, stores.namespaces());
+        } finally {
+            stores.destroy();
+        }
+    }
+
+    @Test
+    public void namespacesAreBoundedAndValidated() {
+        OfferProperties properties = new OfferProperties();
+        properties.getNamespaces().setMax(2);
+        OfferStores stores = new OfferStores(new OfferStore(), properties);
+        try {
+            stores.write("a");
+            stores.write("b");
+            Assert.assertNotNull(stores.write("a"));
+            assertRejected(stores, "c");
+            stores.drop("b");
+            Assert.assertNotNull(stores.write("c"));
+
+            assertRejected(stores, "");
+            assertRejected(stores, "has space");
+            assertRejected(stores, String.join("", Collections.nCopies(65, "x")));
+        } finally {
+            stores.destroy();
+        }
+    }
+
+    private static void assertRejected(OfferStores stores, String namespace) {
+        try {
+            stores.write(namespace);
+            Assert.fail("namespace '" + namespace + "' was accepted");
+        } catch (ResponseStatusException expected) {
+            // refused
+        }
+    }
+
+    private static OfferRequest offer(int restaurantId, int value) {
+        return new OfferRequest(restaurantId, "FLATX", value, Collections.singletonList("p1"));
+    }
+
+    @Test
+    public void namespacesShareOneValidityTicker() throws InterruptedException {
+        OfferProperties properties = new OfferProperties();
+        properties.getValidity().setTickDuration(Duration.ofMillis(10));
+        OfferStores stores = new OfferStores(new OfferStore(), properties);
+        try {
+            // threads of stores in other tests may still be winding down, so only no new ones are checked for
+            int storeThreads = threads("offer-validity");
+            long ends = System.currentTimeMillis() + 200;
+            for (int i = 0; i < 20; i++) {
+                stores.write("ns" + i).add(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1"), null, ends));
+            }
+            Assert.assertTrue(threads("offer-validity") <= storeThreads);
+            Assert.assertTrue(threads("offer-validity-namespaces") >= 1);
+            Assert.assertNotNull(stores.read("ns3").find(1, "p1"));
+
+            // the stores tick one after another on the shared thread, so each is waited for in turn
+            long deadline = System.currentTimeMillis() + 5_000;
+            for (int i = 0; i < 20; i++) {
+                while (stores.read("ns" + i).size() > 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                Assert.assertEquals("ns" + i, 0, stores.read("ns" + i).size());
+            }
+        } finally {
+            stores.destroy();
+        }
+    }
+
+    private static int threads(String name) {
+        int threads = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(name)) {
+                threads++;
+            }
+        }
+        return threads;
+    }
+}
@@ -0,0 +1,30 @@
+package com.springboot.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+
+public class OfferValidatorTest {
+
+    @Test
+    public void offersWithoutAnOfferTypeAreRejectedWithBadRequest() {
+        for (String offerType : Arrays.asList(null, "")) {
+            try {
+                OfferValidator.check(new OfferRequest(1, offerType, 10, Arrays.asList("p1")));
+                Assert.fail("stored an offer with offer_type " + offerType);
+            } catch (ResponseStatusException e) {
+                Assert.assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+                Assert.assertEquals("offer_type is required", e.getReason());
+            }
+        }
+    }
+
+    @Test
+    public void unknownOfferTypesAreStillAccepted() {
+        Assert.assertNull(OfferValidator.problem(new OfferRequest(1, "BOGO", 10, Arrays.asList("p1"))));
+        Assert.assertNull(OfferValidator.problem(new OfferRequest(1, "flatx", 10, null)));
+    }
+}
@@ -0,0 +1,168 @@
+package com.springboot.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class OfferValidityTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    public void offersMatchOnlyWhileTheirWindowIsOpen() {
+        ManualClock clock = new ManualClock(START);
+        OfferStore store = new OfferStore(clock);
+        try {
+            store.add(offer(1, 10, START + 1_000, START + 5_000));
+            store.add(offer(1, 20, null, START + 3_000));
+            Assert.assertEquals(2, store.size());
+            Assert.assertEquals(20, store.find(1, "p1").getValue());
+
+            // the later offer was added second, so it loses to the first once both are open
+            clock.set(START + 1_000);
+            store.refreshDue();
+            Assert.assertEquals(10, store.find(1, "p1").getValue());
+
+            clock.set(START + 3_050);
+            store.refreshDue();
+            Assert.assertEquals(1, store.size());
+            Assert.assertEquals(10, store.find(1, "p1").getValue());
+
+            clock.set(START + 5_000);
+            store.refreshDue();
+            Assert.assertNull(store.find(1, "p1"));
+            Assert.assertFalse(store.hasCandidates(1));
+            Assert.assertEquals(0, store.size());
+            Assert.assertTrue(store.snapshot().offers(1).isEmpty());
+        } finally {
+            store.destroy();
+        }
+    }
+
+    @Test
+    public void offersAlreadyEndedAreNeverStored() {
+        ManualClock clock = new ManualClock(START);
+        OfferStore store = new OfferStore(clock);
+        try {
+            store.add(offer(1, 10, null, START));
+            store.add(offer(2, 10, null, null));
+            Assert.assertEquals(1, store.size());
+            Assert.assertNull(store.find(1, "p1"));
+            Assert.assertNotNull(store.find(2, "p1"));
+        } finally {
+            store.destroy();
+        }
+    }
+
+    @Test
+    public void wheelReturnsDeadlinesInOrderAcrossLevels() {
+        TimingWheel<Long> wheel = new TimingWheel<>(10, 8, 3, 0);
+        long[] deadlines = {5, 65, 80, 640, 641, 5_110, 5_120, 90_000};
+        for (int i = deadlines.length - 1; i >= 0; i--) {
+            wheel.schedule(deadlines[i], deadlines[i]);
+        }
+        List<Long> due = new ArrayList<>();
+        for (long now = 0; now <= 100_000; now += 7) {
+            for (Long deadline : wheel.advance(now)) {
+                // rounded up to the 10ms tick, and never early
+                Assert.assertTrue(now >= deadline);
+                Assert.assertTrue(now < deadline + 10 + 7);
+                due.add(deadline);
+            }
+        }
+        Assert.assertEquals(deadlines.length, due.size());
+        for (int i = 0; i < deadlines.length; i++) {
+            Assert.assertEquals(deadlines[i], (long) due.get(i));
+        }
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void windowsSurviveARestart() throws Exception {
+        Path dir = Files.createTempDirectory("offer-validity");
+        try {
+            ManualClock clock = new ManualClock(START);
+            OfferStore store = new OfferStore(journal(dir), clock, 100);
+            store.add(offer(1, 10, START + TimeUnit.HOURS.toMillis(1), null));
+            store.add(offer(1, 20, null, START + TimeUnit.MINUTES.toMillis(1)));
+            store.add(offer(2, 30, null, null));
+            store.destroy();
+
+            clock.set(START + TimeUnit.MINUTES.toMillis(2));
+            OfferStore restored = new OfferStore(journal(dir), clock, 100);
+            Assert.assertEquals(2, restored.size());
+            Assert.assertNull(restored.find(1, "p1"));
+            Assert.assertEquals(START + TimeUnit.HOURS.toMillis(1), (long) restored.snapshot().offers(1).get(0).getValidFrom());
+
+            clock.set(START + TimeUnit.HOURS.toMillis(1));
+            restored.refreshDue();
+            Assert.assertEquals(10, restored.find(1, "p1").getValue());
+            Assert.assertEquals(30, restored.find(2, "p1").getValue());
+            restored.destroy();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static OfferRequest offer(int restaurantId, int value, Long validFrom, Long validUntil) {
+        return new OfferRequest(restaurantId, "FLATX", value, Collections.singletonList("p1"), validFrom, validUntil);
+    }
+
+    private static OfferJournal journal(Path dir) {
+        OfferProperties properties = new OfferProperties();
+        properties.getJournal().setDir(dir.toString());
+        return new OfferJournal(properties);
+    }
+
+    private static void delete(Path dir) throws Exception {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    static final class ManualClock extends Clock {
+        private volatile long millis;
+
+        ManualClock(long millis) {
+            this.millis = millis;
+        }
+
+        void set(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.springboot.controller;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for /api/v1/user_segment with configurable latency and error
+ * rate, for benchmark and load runs that should not depend on MockServer.
+ * User n is in segment "p" + (n % 3 + 1).
+ */
+public class SegmentServiceStub implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public SegmentServiceStub(int port, long latencyMillis, double errorRate) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "segment-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/api/v1/user_segment", exchange -> {
+            try {
+                if (latencyMillis > 0) {
+                    Thread.sleep(latencyMillis);
+                }
+                if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                    exchange.sendResponseHeaders(500, -1);
+                    return;
+                }
+                String query = exchange.getRequestURI().getQuery();
+                int userId = Integer.parseInt(query.substring(query.indexOf('=') + 1));
+                byte[] body = ("{\"segment\": \"p" + (userId % 3 + 1) + "\"}").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    public String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/api/v1/user_segment";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,103 @@
+package com.springboot.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+public class SegmentTableTest {
+
+    @Test
+    public void looksUpUsersAndKeepsTheEmptySegment() throws Exception {
+        Path file = Files.createTempFile("segments", ".table");
+        SegmentTable table = null;
+        try {
+            int users = 100_000;
+            int[] userIds = new int[users];
+            String[] segments = new String[users];
+            Random random = new Random(11);
+            for (int i = 0; i < users; i++) {
+                // even ids only, in shuffled order, so odd ids are misses
+                userIds[i] = i * 2;
+                segments[i] = i % 10 == 0 ? null : "p" + (i % 3 + 1);
+            }
+            for (int i = users - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int id = userIds[i];
+                String segment = segments[i];
+                userIds[i] = userIds[j];
+                segments[i] = segments[j];
+                userIds[j] = id;
+                segments[j] = segment;
+            }
+            SegmentTable.write(file, userIds, segments);
+            table = table(file);
+
+            Assert.assertEquals(users, table.users());
+            for (int i = 0; i < users; i++) {
+                SegmentResponse response = table.lookup(i * 2);
+                Assert.assertNotNull(response);
+                Assert.assertEquals(i % 10 == 0 ? null : "p" + (i % 3 + 1), response.getSegment());
+                Assert.assertNull(table.lookup(i * 2 + 1));
+            }
+            Assert.assertNull(table.lookup(-1));
+            Assert.assertNull(table.lookup(Integer.MAX_VALUE));
+            Assert.assertEquals(users, table.hits());
+        } finally {
+            if (table != null) {
+                table.destroy();
+            }
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void newSnapshotIsSwappedInAndABadOneIsIgnored() throws Exception {
+        Path file = Files.createTempFile("segments", ".table");
+        SegmentTable table = null;
+        try {
+            SegmentTable.write(file, new int[] {5, 1}, new String[] {"p1", "p2"});
+            table = table(file);
+            Assert.assertEquals("p1", table.lookup(5).getSegment());
+            Assert.assertNull(table.lookup(9));
+
+            SegmentTable.write(file, new int[] {5, 9, 1}, new String[] {"p3", "p1", null});
+            table.reload();
+            Assert.assertEquals("p3", table.lookup(5).getSegment());
+            Assert.assertEquals("p1", table.lookup(9).getSegment());
+            Assert.assertNull(table.lookup(1).getSegment());
+
+            // replaced by rename, as write does; rewriting a mapped file in place would corrupt the live table
+            Path bad = Files.createTempFile(file.getParent(), "segments", ".bad");
+            Files.write(bad, new byte[] {1, 2, 3});
+            Files.move(bad, file, StandardCopyOption.REPLACE_EXISTING);
+            table.reload();
+            Assert.assertEquals(3, table.users());
+            Assert.assertEquals("p3", table.lookup(5).getSegment());
+        } finally {
+            if (table != null) {
+                table.destroy();
+            }
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateUsersAreRejected() throws Exception {
+        Path file = Files.createTempFile("segments", ".table");
+        try {
+            SegmentTable.write(file, new int[] {3, 3}, new String[] {"p1", "p2"});
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static SegmentTable table(Path file) {
+        SegmentProperties properties = new SegmentProperties();
+        properties.getTable().setFile(file.toString());
+        return new SegmentTable(properties);
+    }
+}
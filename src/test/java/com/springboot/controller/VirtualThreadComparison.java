@@ -0,0 +1,203 @@
+package com.springboot.controller;
+
+import com.springboot.CartOfferApplication;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the blocking apply_offer endpoint with the same closed-loop load against a delayed
+ * local segment stub, once on Tomcat's platform-thread pool and once with
+ * execution.virtual-threads=true, and reports throughput, latency, Tomcat worker threads and
+ * the heap held per in-flight cart.
+ *
+ * Clients are driven from a non-blocking HTTP client so the load itself adds no threads.
+ * Heap is measured after a GC while every client has a cart outstanding, against an idle
+ * baseline; a platform worker's stack lives outside the heap, so for the pool run the
+ * thread count times the reserved stack size is printed alongside. Needs JDK 21 or later
+ * for the virtual-thread run, which otherwise reports that it fell back to the pool.
+ *
+ * Usage: VirtualThreadComparison [clients=2000] [tomcatThreads=200] [segmentLatencyMs=100] [seconds=10]
+ */
+public class VirtualThreadComparison {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int tomcatThreads = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 100;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        System.out.printf("java=%s clients=%d tomcatThreads=%d segmentLatency=%dms duration=%ds stack=%dKB%n",
+                System.getProperty("java.version"), clients, tomcatThreads, latencyMillis, seconds, stackSizeKb());
+        try (SegmentServiceStub stub = new SegmentServiceStub(0, latencyMillis, 0.0)) {
+            for (boolean virtual : new boolean[] {false, true}) {
+                ConfigurableApplicationContext app = SpringApplication.run(CartOfferApplication.class,
+                        "--server.port=0",
+                        "--server.tomcat.max-threads=" + tomcatThreads,
+                        "--server.tomcat.max-connections=" + (clients * 2),
+                        "--server.tomcat.accept-count=" + clients,
+                        "--execution.virtual-threads=" + virtual,
+                        "--segment.url=" + stub.url(),
+                        "--segment.cache.enabled=false",
+                        "--segment.limiter.enabled=false",
+                        "--admission.enabled=false",
+                        "--offer.decision-log.sample-rate=0.0",
+                        "--segment.client.max-connections=" + clients,
+                        "--segment.client.deadline=10s",
+                        "--segment.client.read-timeout=10s");
+                try {
+                    app.getBean(OfferStore.class).add(new OfferRequest(1, "FLATX", 10, Arrays.asList("p1", "p2", "p3")));
+                    String url = "http://localhost:" + app.getEnvironment().getProperty("local.server.port")
+                            + "/api/v1/cart/apply_offer";
+                    String mode = virtual && app.getBean(VirtualThreads.class).isEnabled() ? "virtual threads"
+                            : virtual ? "virtual (unavailable, pool)" : "platform pool";
+                    run(url, clients, 2, false);
+                    Result result = run(url, clients, seconds, true);
+                    System.out.printf("%-28s %8.0f req/s  mean %7.1f ms  errors %d  workers %5d  heap/in-flight %6.1f KB"
+                                    + "  worker stacks %5d MB reserved%n",
+                            mode, result.completed.get() / (double) seconds, result.meanMillis(), result.errors.get(),
+                            result.workers, result.heapPerInFlightKb(clients),
+                            result.workers * (long) stackSizeKb() / 1024);
+                } finally {
+                    app.close();
+                }
+            }
+        }
+    }
+
+    private static Result run(String url, int clients, int seconds, boolean measure) throws Exception {
+        Result result = new Result();
+        if (measure) {
+            result.idleHeap = heapAfterGc();
+        }
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicInteger userIds = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger(clients);
+        try (CloseableHttpAsyncClient http = HttpAsyncClients.custom()
+                .setMaxConnTotal(clients)
+                .setMaxConnPerRoute(clients)
+                .build()) {
+            http.start();
+            for (int i = 0; i < clients; i++) {
+                send(http, url, userIds, end, result, running);
+            }
+            if (measure) {
+                // halfway through every client has a cart outstanding
+                Thread.sleep(TimeUnit.SECONDS.toMillis(seconds) / 2);
+                result.workers = workerThreads();
+                result.loadedHeap = heapAfterGc();
+            }
+            while (running.get() > 0) {
+                Thread.sleep(10);
+            }
+        }
+        return result;
+    }
+
+    // Closed loop: each completed cart sends the next one until the run ends.
+    private static void send(CloseableHttpAsyncClient http, String url, AtomicInteger userIds, long end, Result result,
+                             AtomicInteger running) {
+        if (System.nanoTime() >= end) {
+            running.decrementAndGet();
+            return;
+        }
+        // distinct users so single-flight cannot coalesce the segment calls
+        byte[] cart = ("{\"cart_value\":200,\"restaurant_id\":1,\"user_id\":" + userIds.incrementAndGet() + "}")
+                .getBytes(StandardCharsets.UTF_8);
+        HttpPost post = new HttpPost(url);
+        post.setEntity(new ByteArrayEntity(cart, ContentType.APPLICATION_JSON));
+        long start = System.nanoTime();
+        http.execute(post, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    EntityUtils.consume(response.getEntity());
+                } catch (IOException ignored) {
+                    // the status code is all that matters here
+                }
+                if (response.getStatusLine().getStatusCode() == 200) {
+                    result.completed.incrementAndGet();
+                    result.totalNanos.addAndGet(System.nanoTime() - start);
+                } else {
+                    result.errors.incrementAndGet();
+                }
+                send(http, url, userIds, end, result, running);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                result.errors.incrementAndGet();
+                send(http, url, userIds, end, result, running);
+            }
+
+            @Override
+            public void cancelled() {
+                result.errors.incrementAndGet();
+                send(http, url, userIds, end, result, running);
+            }
+        });
+    }
+
+    // Tomcat's pooled request threads; virtual threads are not platform threads and do not show up here.
+    private static int workerThreads() {
+        int workers = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("http-nio-") && thread.getName().contains("-exec-")) {
+                workers++;
+            }
+        }
+        return workers;
+    }
+
+    private static long heapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long stackSizeKb() {
+        try {
+            com.sun.management.HotSpotDiagnosticMXBean hotspot =
+                    ManagementFactory.getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+            long size = Long.parseLong(hotspot.getVMOption("ThreadStackSize").getValue());
+            return size > 0 ? size : 1024;
+        } catch (RuntimeException | LinkageError e) {
+            return 1024;
+        }
+    }
+
+    private static final class Result {
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        int workers;
+        long idleHeap;
+        long loadedHeap;
+
+        double meanMillis() {
+            long done = completed.get();
+            return done == 0 ? 0 : totalNanos.get() / (double) done / 1_000_000;
+        }
+
+        double heapPerInFlightKb(int inFlight) {
+            return Math.max(0, loadedHeap - idleHeap) / 1024.0 / inFlight;
+        }
+    }
+}